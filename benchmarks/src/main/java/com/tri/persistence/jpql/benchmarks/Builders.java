@@ -0,0 +1,101 @@
+package com.tri.persistence.jpql.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.tri.persistence.jpql.QueryBuilder;
+import com.tri.persistence.jpql.WhereItems;
+
+/**
+ * Query builders of different sizes used as benchmark input.
+ */
+public enum Builders {
+
+	/** few clauses, three predicates, two parameters */
+	SMALL {
+		@Override
+		public QueryBuilder create() {
+			final QueryBuilder builder = new QueryBuilder();
+			builder.select.add("e").from.add("Entity e").where
+					.add("e.name=:name").add("e.active=true")
+					.in("e.type", 1, 2, 3);
+			builder.order.add("e.name");
+			builder.setParameter("name", "xyz");
+			builder.setParameter("type", 1);
+			return builder;
+		}
+	},
+
+	/** nested AND/OR groups, a sub-query, 100 IN values, 20 parameters */
+	MEDIUM {
+		@Override
+		public QueryBuilder create() {
+			final QueryBuilder builder = new QueryBuilder();
+			builder.select.add("e").from.add("Entity e").from.add("Other o");
+			for (int i = 0; i < 10; i++) {
+				builder.where.or().add("e.field" + i + "=:a" + i)
+						.add("o.field" + i + "=:b" + i);
+				builder.setParameter("a" + i, "a" + i);
+				builder.setParameter("b" + i, "b" + i);
+			}
+			builder.where.in("e.id", values(100));
+			builder.where.subquery("e.parent IN").select.add("p").from
+					.add("Parent p").where.add("p.active=true");
+			builder.group.add("e.type");
+			builder.order.add("e.name").order.add("e.id");
+			return builder;
+		}
+	},
+
+	/**
+	 * 10,000 IN values, a 6-level AND/OR tree with a sub-query per level, 50
+	 * parameters
+	 */
+	PATHOLOGICAL {
+		@Override
+		public QueryBuilder create() {
+			final QueryBuilder builder = new QueryBuilder();
+			builder.select.add("e").from.add("Entity e");
+			builder.where.in("e.id", values(10000));
+			nest(builder.where, 6);
+			for (int i = 0; i < 50; i++) {
+				builder.setParameter("p" + i, i);
+			}
+			builder.order.add("e.id");
+			return builder;
+		}
+
+		private void nest(final WhereItems items, final int depth) {
+			items.add("e.level" + depth + "=:l" + depth);
+			items.subquery("EXISTS").select.add("s").from.add("Sub s").where
+					.add("s.entity=e").add("s.level=" + depth);
+			if (depth > 1) {
+				nest(depth % 2 == 0 ? items.or() : items.and(), depth - 1);
+				nest(depth % 2 == 0 ? items.or() : items.and(), depth - 1);
+			}
+		}
+	};
+
+	/**
+	 * Creates a new builder.
+	 * 
+	 * @return the builder
+	 */
+	public abstract QueryBuilder create();
+
+	/**
+	 * Returns a list of ascending {@code Long} values.
+	 * 
+	 * @param size
+	 *            number of values
+	 * @return list of values
+	 */
+	public static List<Long> values(final int size) {
+		final List<Long> values = new ArrayList<Long>(size);
+		for (long i = 0; i < size; i++) {
+			values.add(i);
+		}
+		return values;
+	}
+
+}
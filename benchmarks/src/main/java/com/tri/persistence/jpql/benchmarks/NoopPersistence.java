@@ -0,0 +1,52 @@
+package com.tri.persistence.jpql.benchmarks;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+
+/**
+ * No-op {@link EntityManager} whose queries accept and discard parameters, so
+ * benchmarks measure the builder and not a {@literal JPA} provider.
+ */
+public final class NoopPersistence {
+
+	private static final InvocationHandler HANDLER = new InvocationHandler() {
+
+		@Override
+		public Object invoke(final Object proxy, final Method method,
+				final Object[] args) {
+			final Class<?> type = method.getReturnType();
+			if (type.isInstance(QUERY)) {
+				return QUERY;
+			} else if (type == boolean.class) {
+				return false;
+			} else if (type == int.class) {
+				return 0;
+			}
+			return null;
+		}
+
+	};
+
+	private static final TypedQuery<?> QUERY = (TypedQuery<?>) Proxy
+			.newProxyInstance(NoopPersistence.class.getClassLoader(),
+					new Class<?>[] { TypedQuery.class }, HANDLER);
+
+	private NoopPersistence() {
+	}
+
+	/**
+	 * Creates an entity manager returning no-op queries.
+	 * 
+	 * @return the entity manager
+	 */
+	public static EntityManager createEntityManager() {
+		return (EntityManager) Proxy.newProxyInstance(
+				NoopPersistence.class.getClassLoader(),
+				new Class<?>[] { EntityManager.class }, HANDLER);
+	}
+
+}
@@ -0,0 +1,94 @@
+package com.tri.persistence.jpql.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.tri.persistence.jpql.QueryBuilder;
+
+/**
+ * Measures rendering, cloning and query creation, including parameter
+ * application, for small, medium and pathological builders. Rendered
+ * fragments are kept until changed, so {@link #render(Cold)} renders a fresh
+ * builder per invocation while {@link #renderMemoized()} measures rendering
+ * an unchanged builder again. Run with {@code -prof gc} to report allocation
+ * rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryBuilderBenchmark {
+
+	@Param({ "SMALL", "MEDIUM", "PATHOLOGICAL" })
+	public Builders builders;
+
+	private QueryBuilder builder;
+
+	private EntityManager manager;
+
+	@Setup
+	public void setup() {
+		builder = builders.create();
+		manager = NoopPersistence.createEntityManager();
+	}
+
+	/**
+	 * Fresh, not yet rendered builder per invocation.
+	 */
+	@State(Scope.Thread)
+	public static class Cold {
+
+		QueryBuilder builder;
+
+		@Setup(Level.Invocation)
+		public void setup(final QueryBuilderBenchmark benchmark) {
+			builder = benchmark.builders.create();
+		}
+
+	}
+
+	@Benchmark
+	public String render(final Cold cold) {
+		return cold.builder.render();
+	}
+
+	@Benchmark
+	public String renderMemoized() {
+		return builder.render();
+	}
+
+	@Benchmark
+	public Object cloneBuilder() throws CloneNotSupportedException {
+		return builder.clone();
+	}
+
+	@Benchmark
+	public String cloneAndRender() throws CloneNotSupportedException {
+		final QueryBuilder clone = (QueryBuilder) builder.clone();
+		clone.where.add("e.extra=:extra");
+		return clone.render();
+	}
+
+	@Benchmark
+	public Query createQuery() {
+		return builder.createQuery(manager);
+	}
+
+}
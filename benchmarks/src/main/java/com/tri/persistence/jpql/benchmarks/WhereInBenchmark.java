@@ -0,0 +1,91 @@
+package com.tri.persistence.jpql.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.tri.persistence.jpql.InOptions;
+import com.tri.persistence.jpql.QueryBuilder;
+import com.tri.persistence.jpql.WhereIn;
+
+/**
+ * Measures building and rendering of {@literal SQL} In Expressions with
+ * literal and bound values. Rendered predicates are kept until changed, so
+ * {@link #render(Cold)} renders a fresh expression per invocation while
+ * {@link #renderMemoized()} measures rendering again. Run with
+ * {@code -prof gc} to report allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WhereInBenchmark {
+
+	@Param({ "10", "1000", "10000" })
+	public int size;
+
+	private List<Long> values;
+
+	private WhereIn in;
+
+	@Setup
+	public void setup() {
+		values = Builders.values(size);
+		in = new WhereIn(new QueryBuilder(), "e.id", false, values);
+	}
+
+	/**
+	 * Fresh, not yet rendered In Expression per invocation.
+	 */
+	@State(Scope.Thread)
+	public static class Cold {
+
+		WhereIn in;
+
+		@Setup(Level.Invocation)
+		public void setup(final WhereInBenchmark benchmark) {
+			in = new WhereIn(new QueryBuilder(), "e.id", false,
+					benchmark.values);
+		}
+
+	}
+
+	@Benchmark
+	public String render(final Cold cold) {
+		return cold.in.render();
+	}
+
+	@Benchmark
+	public String renderMemoized() {
+		return in.render();
+	}
+
+	@Benchmark
+	public String buildAndRenderLiteral() {
+		final QueryBuilder builder = new QueryBuilder();
+		builder.where.in("e.id", values, InOptions.LITERAL);
+		return builder.render();
+	}
+
+	@Benchmark
+	public String buildAndRenderParameter() {
+		final QueryBuilder builder = new QueryBuilder();
+		builder.where.in("e.id", values, InOptions.PARAMETER);
+		return builder.render();
+	}
+
+}
@@ -0,0 +1,254 @@
+package com.tri.persistence.jpql;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+
+import javax.persistence.Query;
+import javax.persistence.TemporalType;
+
+/**
+ * Resolved parameter layout of a query: one slot per parameter with its name
+ * or unboxed position, its temporal type and a binding kind selecting the
+ * {@link Query} setter. Computed once, binding values is a single loop over
+ * the slots. Parameters of other classes than {@link ParameterObject},
+ * {@link ParameterDate} and {@link ParameterCalendar} are bound by their
+ * {@link Parameter#apply(Query)} method. {@code BindingPlan} objects are
+ * immutable.
+ */
+final class BindingPlan {
+
+	static final BindingPlan EMPTY = new BindingPlan(0);
+
+	private static final byte NAMED = 0;
+
+	private static final byte NAMED_DATE = 1;
+
+	private static final byte NAMED_CALENDAR = 2;
+
+	private static final byte POSITIONAL = 3;
+
+	private static final byte POSITIONAL_DATE = 4;
+
+	private static final byte POSITIONAL_CALENDAR = 5;
+
+	/** bound by {@link Parameter#apply(Query)}, the value is the parameter */
+	private static final byte APPLY = 6;
+
+	private final byte[] kinds;
+
+	private final String[] names;
+
+	private final int[] positions;
+
+	private final TemporalType[] temporalTypes;
+
+	private BindingPlan(final int size) {
+		kinds = new byte[size];
+		names = new String[size];
+		positions = new int[size];
+		temporalTypes = new TemporalType[size];
+	}
+
+	/**
+	 * Resolves the layout of given parameters.
+	 * 
+	 * @param parameters
+	 *            parameters defining the slots
+	 * @return binding plan
+	 */
+	static BindingPlan of(final List<Parameter<?>> parameters) {
+		final int size = parameters.size();
+		if (size == 0) {
+			return EMPTY;
+		}
+		final BindingPlan result = new BindingPlan(size);
+		for (int i = 0; i < size; i++) {
+			final Parameter<?> parameter = parameters.get(i);
+			if (parameter.name != null) {
+				result.names[i] = parameter.name;
+			} else if (parameter.position != null) {
+				result.positions[i] = parameter.position;
+			} else {
+				throw new IllegalStateException(
+						"Missing parameter name or position");
+			}
+			result.kinds[i] = kind(parameter);
+			result.temporalTypes[i] = temporalType(parameter);
+		}
+		return result;
+	}
+
+	private static byte kind(final Parameter<?> parameter) {
+		final byte base = parameter.name != null ? NAMED : POSITIONAL;
+		final Class<?> type = parameter.getClass();
+		if (type == ParameterObject.class) {
+			return base;
+		} else if (type == ParameterDate.class) {
+			return (byte) (base + NAMED_DATE);
+		} else if (type == ParameterCalendar.class) {
+			return (byte) (base + NAMED_CALENDAR);
+		}
+		return APPLY;
+	}
+
+	private static TemporalType temporalType(final Parameter<?> parameter) {
+		if (parameter.getClass() == ParameterDate.class) {
+			return ((ParameterDate) parameter).temporalType;
+		} else if (parameter.getClass() == ParameterCalendar.class) {
+			return ((ParameterCalendar) parameter).temporalType;
+		}
+		return null;
+	}
+
+	/**
+	 * Returns true if this plan is the layout of given parameters, e.g. for a
+	 * plan cached for the same query but resolved for another builder.
+	 * 
+	 * @param parameters
+	 *            parameters defining the slots
+	 * @return true if {@link #of(List)} would resolve an equal plan
+	 */
+	boolean matches(final List<Parameter<?>> parameters) {
+		if (parameters.size() != kinds.length) {
+			return false;
+		}
+		for (int i = 0; i < kinds.length; i++) {
+			final Parameter<?> parameter = parameters.get(i);
+			if (kinds[i] != kind(parameter)
+					|| temporalTypes[i] != temporalType(parameter)) {
+				return false;
+			}
+			final boolean sameKey;
+			if (parameter.name != null) {
+				sameKey = parameter.name.equals(names[i]);
+			} else {
+				sameKey = names[i] == null && parameter.position != null
+						&& parameter.position == positions[i];
+			}
+			if (sameKey == false) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the values of given parameters in slot order, the parameters
+	 * themselves for slots bound by {@link Parameter#apply(Query)}.
+	 * 
+	 * @param parameters
+	 *            parameters this plan was resolved from
+	 * @return parameter values
+	 */
+	static Object[] values(final List<Parameter<?>> parameters) {
+		final Object[] result = new Object[parameters.size()];
+		for (int i = 0; i < result.length; i++) {
+			final Parameter<?> parameter = parameters.get(i);
+			result[i] = kind(parameter) == APPLY ? parameter : parameter.value;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the number of slots.
+	 * 
+	 * @return number of slots
+	 */
+	int size() {
+		return kinds.length;
+	}
+
+	/**
+	 * Returns the slot index of the named parameter.
+	 * 
+	 * @param name
+	 *            parameter name
+	 * @return slot index or -1 if there is no such parameter
+	 */
+	int indexOf(final String name) {
+		for (int i = 0; i < names.length; i++) {
+			if (name.equals(names[i])) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Binds given values to given query. Date and Calendar slots bind other
+	 * values, e.g. null, without temporal type. Slots bound by
+	 * {@link Parameter#apply(Query)} bind other values than parameters by
+	 * name or position.
+	 * 
+	 * @param query
+	 *            JPA Query
+	 * @param values
+	 *            one value per slot, in slot order
+	 * @return the given query
+	 */
+	<Q extends Query> Q bind(final Q query, final Object[] values) {
+		if (values.length != kinds.length) {
+			throw new IllegalArgumentException("Expected " + kinds.length
+					+ " parameter values but got " + values.length);
+		}
+
+		for (int i = 0; i < kinds.length; i++) {
+			final Object value = values[i];
+			switch (kinds[i]) {
+			case NAMED:
+				query.setParameter(names[i], value);
+				break;
+			case NAMED_DATE:
+				if (value instanceof Date) {
+					query.setParameter(names[i], (Date) value, temporalTypes[i]);
+					break;
+				}
+				query.setParameter(names[i], value);
+				break;
+			case NAMED_CALENDAR:
+				if (value instanceof Calendar) {
+					query.setParameter(names[i], (Calendar) value,
+							temporalTypes[i]);
+					break;
+				}
+				query.setParameter(names[i], value);
+				break;
+			case POSITIONAL:
+				query.setParameter(positions[i], value);
+				break;
+			case POSITIONAL_DATE:
+				if (value instanceof Date) {
+					query.setParameter(positions[i], (Date) value,
+							temporalTypes[i]);
+					break;
+				}
+				query.setParameter(positions[i], value);
+				break;
+			case POSITIONAL_CALENDAR:
+				if (value instanceof Calendar) {
+					query.setParameter(positions[i], (Calendar) value,
+							temporalTypes[i]);
+					break;
+				}
+				query.setParameter(positions[i], value);
+				break;
+			case APPLY:
+				if (value instanceof Parameter) {
+					((Parameter<?>) value).apply(query);
+				} else if (names[i] != null) {
+					query.setParameter(names[i], value);
+				} else {
+					query.setParameter(positions[i], value);
+				}
+				break;
+			default:
+				throw new IllegalStateException("Unknown parameter kind "
+						+ kinds[i]);
+			}
+		}
+
+		return query;
+	}
+
+}
@@ -0,0 +1,150 @@
+package com.tri.persistence.jpql;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+
+/**
+ * <p>
+ * Executes a query restricted by a large {@literal SQL} In Expression as
+ * several queries, one per chunk of values, and concatenates their results.
+ * Each query is a clone of the given builder with an In Expression for one
+ * chunk added to its Where Clause. Only one chunk is bound at a time, so memory
+ * used for query building stays proportional to the chunk size.
+ * </p>
+ * 
+ * <pre>
+ * QueryBuilder builder = new QueryBuilder().select.add("e").from
+ * 		.add("Entity e").where.add("e.active=true").builder();
+ * List&lt;Entity&gt; result = new ChunkedInQuery(builder, "e.id", ids, 1000)
+ * 		.getResultList(entityManager, Entity.class);
+ * </pre>
+ * <p>
+ * The given builder is not changed. Ordering and paging of the builder apply
+ * per chunk, not to the concatenated result.
+ * </p>
+ */
+public class ChunkedInQuery {
+
+	private final QueryBuilder builder;
+
+	private final String expression;
+
+	private final Collection<?> values;
+
+	private final int chunkSize;
+
+	private final InOptions options;
+
+	/**
+	 * Constructor, values are bound as parameter.
+	 * 
+	 * @param builder
+	 *            query to execute per chunk
+	 * @param expression
+	 *            {@literal SQL} expression, e.g. expression in
+	 *            {@code expression IN (...)}, actually the left part of the
+	 *            predicate
+	 * @param values
+	 *            collection of values
+	 * @param chunkSize
+	 *            maximum number of values per query
+	 */
+	public ChunkedInQuery(final QueryBuilder builder, final String expression,
+			final Collection<?> values, final int chunkSize) {
+		this(builder, expression, values, chunkSize, InOptions.PARAMETER);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param builder
+	 *            query to execute per chunk
+	 * @param expression
+	 *            {@literal SQL} expression, e.g. expression in
+	 *            {@code expression IN (...)}, actually the left part of the
+	 *            predicate
+	 * @param values
+	 *            collection of values
+	 * @param chunkSize
+	 *            maximum number of values per query
+	 * @param options
+	 *            rendering options of the In Expression per chunk
+	 */
+	public ChunkedInQuery(final QueryBuilder builder, final String expression,
+			final Collection<?> values, final int chunkSize,
+			final InOptions options) {
+		if (builder == null) {
+			throw new NullPointerException("Query builder required");
+		}
+		if (chunkSize < 1) {
+			throw new IllegalArgumentException("Positive chunk size required");
+		}
+		this.builder = builder;
+		this.expression = expression;
+		this.values = values;
+		this.chunkSize = chunkSize;
+		this.options = options.withChunkSize(0);
+	}
+
+	/**
+	 * Executes one query per chunk and returns the concatenated results.
+	 * 
+	 * @param manager
+	 *            JPA EntityManager
+	 * @param type
+	 *            the type of the query result
+	 * @return results of all queries
+	 */
+	public <T> List<T> getResultList(final EntityManager manager,
+			final Class<T> type) {
+		final List<T> result = new ArrayList<T>();
+		final Iterator<?> iterator = values.iterator();
+		while (iterator.hasNext()) {
+			result.addAll(createChunkQuery(iterator).createQuery(manager, type)
+					.getResultList());
+		}
+		return result;
+	}
+
+	/**
+	 * Executes one update or delete statement per chunk.
+	 * 
+	 * @param manager
+	 *            JPA EntityManager
+	 * @return total number of entities updated or deleted
+	 */
+	public int executeUpdate(final EntityManager manager) {
+		int result = 0;
+		final Iterator<?> iterator = values.iterator();
+		while (iterator.hasNext()) {
+			result += createChunkQuery(iterator).createQuery(manager)
+					.executeUpdate();
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a clone of the builder restricted to the next chunk of values.
+	 */
+	private QueryBuilder createChunkQuery(final Iterator<?> iterator) {
+		final List<Object> chunk = new ArrayList<Object>(Math.min(chunkSize,
+				values.size()));
+		while (chunk.size() < chunkSize && iterator.hasNext()) {
+			chunk.add(iterator.next());
+		}
+
+		final QueryBuilder query;
+		try {
+			query = (QueryBuilder) builder.clone();
+		} catch (CloneNotSupportedException e) {
+			throw new IllegalStateException(e);
+		}
+		query.where.in(expression, chunk, options);
+		return query;
+	}
+
+}
@@ -0,0 +1,82 @@
+package com.tri.persistence.jpql;
+
+/**
+ * 64 bit hash functions of the structural fingerprints, see
+ * {@link QueryBuilder#fingerprint()}. All arithmetic wraps around, so
+ * contributions of items can be added and subtracted in any order.
+ */
+final class Fingerprints {
+
+	private Fingerprints() {
+	}
+
+	/**
+	 * Returns the FNV-1a hash of given characters.
+	 * 
+	 * @param value
+	 *            characters or null
+	 * @return hash, 0 for null
+	 */
+	static long of(final CharSequence value) {
+		if (value == null) {
+			return 0;
+		}
+		long result = 0xcbf29ce484222325L;
+		for (int i = 0; i < value.length(); i++) {
+			result ^= value.charAt(i);
+			result *= 0x100000001b3L;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the seed of items of given class.
+	 * 
+	 * @param type
+	 *            item class
+	 * @return seed
+	 */
+	static long of(final Class<?> type) {
+		// String caches its hash code, anonymous subclasses are seeded too
+		return mix(type.getName().hashCode());
+	}
+
+	/**
+	 * Appends given value to a sequence fingerprint, order sensitive.
+	 * 
+	 * @param fingerprint
+	 *            fingerprint of the sequence so far
+	 * @param value
+	 *            fingerprint of the appended value
+	 * @return fingerprint of the extended sequence
+	 */
+	static long append(final long fingerprint, final long value) {
+		return fingerprint * 0x100000001b3L + mix(value);
+	}
+
+	/**
+	 * Returns the contribution of a child to the fingerprint of its
+	 * container. Contributions are summed, so a changed child is applied in
+	 * constant time by adding the difference of its contributions.
+	 * 
+	 * @param value
+	 *            fingerprint of the child
+	 * @param index
+	 *            position of the child
+	 * @return contribution
+	 */
+	static long weigh(final long value, final int index) {
+		return mix(value) * (mix(index + 0x9e3779b97f4a7c15L) | 1);
+	}
+
+	/**
+	 * Scrambles the bits of given value, finalizer of SplitMix64.
+	 */
+	static long mix(final long value) {
+		long result = value;
+		result = (result ^ (result >>> 30)) * 0xbf58476d1ce4e5b9L;
+		result = (result ^ (result >>> 27)) * 0x94d049bb133111ebL;
+		return result ^ (result >>> 31);
+	}
+
+}
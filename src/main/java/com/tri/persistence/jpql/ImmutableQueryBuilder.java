@@ -0,0 +1,460 @@
+package com.tri.persistence.jpql;
+
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import javax.persistence.TemporalType;
+import javax.persistence.TypedQuery;
+
+/**
+ * <p>
+ * Immutable variant of the {@link QueryBuilder}. Every addition returns a new
+ * builder sharing its structure with the previous one, the previous builder is
+ * not changed. Immutable builders are thread-safe, base queries may be kept in
+ * constants and extended concurrently without locking or cloning.
+ * </p>
+ * <p>
+ * Rendering and extending write to the structure shared between builders
+ * only the flags marking it shared and memoized fragments. These fields are
+ * volatile and hold immutable values, so concurrent use at worst renders a
+ * fragment twice. Where items and parameter values added by the caller must
+ * be immutable or not changed any further, as for {@link Parameter}.
+ * </p>
+ * 
+ * <pre>
+ * static final ImmutableQueryBuilder ACTIVE = new ImmutableQueryBuilder()
+ * 		.select("e").from("Entity e").where("e.active=true");
+ * ...
+ * return ACTIVE.where("e.name=:name").setParameter("name", name)
+ * 		.createQuery(entityManager, Entity.class).getResultList();
+ * </pre>
+ * <p>
+ * Use {@link #of(QueryBuilder)} and {@link #toQueryBuilder()} to convert from
+ * and to the mutable {@link QueryBuilder}. The query is rendered at most once
+ * and compiled at most once per immutable builder.
+ * </p>
+ */
+public final class ImmutableQueryBuilder {
+
+	/** never changed after construction, changes are made to copies */
+	private final QueryBuilder builder;
+
+	private volatile String query;
+
+	/** template binding the referenced parameters only */
+	private volatile QueryTemplate template;
+
+	/**
+	 * Constructor, creates an empty builder.
+	 */
+	public ImmutableQueryBuilder() {
+		this(new QueryBuilder());
+	}
+
+	private ImmutableQueryBuilder(final QueryBuilder builder) {
+		// marks the structure shared up front, copies made later from other
+		// threads then find nothing left to change on this builder
+		copy(builder);
+		this.builder = builder;
+	}
+
+	/**
+	 * Returns an immutable builder equal to given builder. Later changes of the
+	 * given builder are not reflected.
+	 * 
+	 * @param builder
+	 *            builder to convert
+	 * @return immutable builder
+	 */
+	public static ImmutableQueryBuilder of(final QueryBuilder builder) {
+		if (builder.parent() != null) {
+			throw new IllegalArgumentException(
+					"Top level query builder required");
+		}
+		return new ImmutableQueryBuilder(copy(builder));
+	}
+
+	/**
+	 * Returns a mutable builder equal to this builder.
+	 * 
+	 * @return mutable builder
+	 */
+	public QueryBuilder toQueryBuilder() {
+		return copy(builder);
+	}
+
+	private static QueryBuilder copy(final QueryBuilder builder) {
+		try {
+			return (QueryBuilder) builder.clone();
+		} catch (CloneNotSupportedException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Adds a Select Clause item.
+	 * 
+	 * @param item
+	 *            clause item
+	 * @return new builder
+	 */
+	public ImmutableQueryBuilder select(final String item) {
+		final QueryBuilder next = copy(builder);
+		next.select.add(item);
+		return new ImmutableQueryBuilder(next);
+	}
+
+	/**
+	 * Adds a Select Clause Constructor Expression.
+	 * 
+	 * @param constructorClass
+	 *            class to be use for constructor expression
+	 * @param expressions
+	 *            constructor parameters
+	 * @return new builder
+	 * @see SelectQueryClause#add(Class, String...)
+	 */
+	public <T> ImmutableQueryBuilder select(final Class<T> constructorClass,
+			final String... expressions) {
+		final QueryBuilder next = copy(builder);
+		next.select.add(constructorClass, expressions);
+		return new ImmutableQueryBuilder(next);
+	}
+
+	/**
+	 * Sets the Update Clause item.
+	 * 
+	 * @param item
+	 *            clause item, e.g. {@code Entity e}
+	 * @return new builder
+	 */
+	public ImmutableQueryBuilder update(final String item) {
+		final QueryBuilder next = copy(builder);
+		next.update.set(item);
+		return new ImmutableQueryBuilder(next);
+	}
+
+	/**
+	 * Sets the Delete Clause item.
+	 * 
+	 * @param item
+	 *            clause item, e.g. {@code Entity e}
+	 * @return new builder
+	 */
+	public ImmutableQueryBuilder deleteFrom(final String item) {
+		final QueryBuilder next = copy(builder);
+		next.deleteFrom.set(item);
+		return new ImmutableQueryBuilder(next);
+	}
+
+	/**
+	 * Adds a Set Clause item of an update statement.
+	 * 
+	 * @param item
+	 *            clause item, e.g. {@code e.field=:value}
+	 * @return new builder
+	 */
+	public ImmutableQueryBuilder set(final String item) {
+		final QueryBuilder next = copy(builder);
+		next.set.add(item);
+		return new ImmutableQueryBuilder(next);
+	}
+
+	/**
+	 * Adds a From Clause item.
+	 * 
+	 * @param item
+	 *            clause item, e.g. {@code Entity e}
+	 * @return new builder
+	 */
+	public ImmutableQueryBuilder from(final String item) {
+		final QueryBuilder next = copy(builder);
+		next.from.add(item);
+		return new ImmutableQueryBuilder(next);
+	}
+
+	/**
+	 * Adds a textual predicate to the Where Clause.
+	 * 
+	 * @param predicate
+	 *            comparison predicate, e.g. {@code field=:whatever}
+	 * @return new builder
+	 */
+	public ImmutableQueryBuilder where(final String predicate) {
+		final QueryBuilder next = copy(builder);
+		next.where.add(predicate);
+		return new ImmutableQueryBuilder(next);
+	}
+
+	/**
+	 * Adds a copy of given item to the Where Clause, e.g. a {@link WhereOr}.
+	 * Later changes of the given item are not reflected.
+	 * 
+	 * @param item
+	 *            where item to copy
+	 * @return new builder
+	 */
+	public ImmutableQueryBuilder where(final WhereItem item) {
+		final QueryBuilder next = copy(builder);
+		try {
+			next.where.add((WhereItem) item.clone());
+		} catch (CloneNotSupportedException e) {
+			throw new IllegalStateException(e);
+		}
+		return new ImmutableQueryBuilder(next);
+	}
+
+	/**
+	 * Adds a disjunction of textual predicates to the Where Clause.
+	 * 
+	 * @param predicates
+	 *            comparison predicates, e.g. {@code field=:whatever}
+	 * @return new builder
+	 */
+	public ImmutableQueryBuilder whereOr(final String... predicates) {
+		final QueryBuilder next = copy(builder);
+		final WhereOr or = next.where.or();
+		for (String predicate : predicates) {
+			or.add(predicate);
+		}
+		return new ImmutableQueryBuilder(next);
+	}
+
+	/**
+	 * Adds an {@literal SQL} {@code IN} predicate to the Where Clause.
+	 * 
+	 * @param expression
+	 *            {@literal SQL} expression, actually the left part of the
+	 *            predicate
+	 * @param collection
+	 *            collection of values
+	 * @param options
+	 *            rendering options
+	 * @return new builder
+	 */
+	public <V extends Object> ImmutableQueryBuilder in(final String expression,
+			final Collection<V> collection, final InOptions options) {
+		final QueryBuilder next = copy(builder);
+		next.where.in(expression, collection, options);
+		return new ImmutableQueryBuilder(next);
+	}
+
+	/**
+	 * Adds an {@literal SQL} {@code NOT IN} predicate to the Where Clause.
+	 * 
+	 * @param expression
+	 *            {@literal SQL} expression, actually the left part of the
+	 *            predicate
+	 * @param collection
+	 *            collection of values
+	 * @param options
+	 *            rendering options
+	 * @return new builder
+	 */
+	public <V extends Object> ImmutableQueryBuilder notIn(
+			final String expression, final Collection<V> collection,
+			final InOptions options) {
+		final QueryBuilder next = copy(builder);
+		next.where.notIn(expression, collection, options);
+		return new ImmutableQueryBuilder(next);
+	}
+
+	/**
+	 * Adds a sub-query predicate to the Where Clause. The parameters of the
+	 * sub-query are added to the new builder.
+	 * 
+	 * @param lhsPredicate
+	 *            left hand side of the predicate, e.g. {@code field IN} or
+	 *            {@code EXISTS}
+	 * @param subquery
+	 *            sub-query
+	 * @return new builder
+	 */
+	public ImmutableQueryBuilder subquery(final String lhsPredicate,
+			final ImmutableQueryBuilder subquery) {
+		final QueryBuilder next = copy(builder);
+		next.where.subquery(lhsPredicate, subquery.builder);
+		return new ImmutableQueryBuilder(next);
+	}
+
+	/**
+	 * Adds a Group By Clause item.
+	 * 
+	 * @param item
+	 *            clause item
+	 * @return new builder
+	 */
+	public ImmutableQueryBuilder group(final String item) {
+		final QueryBuilder next = copy(builder);
+		next.group.add(item);
+		return new ImmutableQueryBuilder(next);
+	}
+
+	/**
+	 * Adds an Order By Clause item.
+	 * 
+	 * @param item
+	 *            clause item, e.g. {@code e.name DESC}
+	 * @return new builder
+	 */
+	public ImmutableQueryBuilder order(final String item) {
+		final QueryBuilder next = copy(builder);
+		next.order.add(item);
+		return new ImmutableQueryBuilder(next);
+	}
+
+	/**
+	 * Adds an Order By Clause item.
+	 * 
+	 * @param column
+	 *            order column
+	 * @return new builder
+	 */
+	public ImmutableQueryBuilder order(final OrderColumn column) {
+		return order(column.render());
+	}
+
+	/**
+	 * Adds given parameter.
+	 * 
+	 * @param name
+	 *            parameter name
+	 * @param value
+	 *            parameter value, pass an immutable object
+	 * @return new builder
+	 */
+	public ImmutableQueryBuilder setParameter(final String name,
+			final Object value) {
+		return setParameter(new ParameterObject(name, value));
+	}
+
+	/**
+	 * Adds given parameter.
+	 * 
+	 * @param name
+	 *            parameter name
+	 * @param value
+	 *            parameter value
+	 * @param temporalType
+	 *            temporal type
+	 * @return new builder
+	 */
+	public ImmutableQueryBuilder setParameter(final String name,
+			final Date value, final TemporalType temporalType) {
+		return setParameter(new ParameterDate(name, value, temporalType));
+	}
+
+	/**
+	 * Adds given parameter.
+	 * 
+	 * @param name
+	 *            parameter name
+	 * @param value
+	 *            parameter value, will be cloned
+	 * @param temporalType
+	 *            temporal type
+	 * @return new builder
+	 */
+	public ImmutableQueryBuilder setParameter(final String name,
+			final Calendar value, final TemporalType temporalType) {
+		return setParameter(new ParameterCalendar(name, value, temporalType));
+	}
+
+	/**
+	 * Adds given parameter.
+	 * 
+	 * @param parameter
+	 *            parameter to add
+	 * @return new builder
+	 */
+	public ImmutableQueryBuilder setParameter(final Parameter<?> parameter) {
+		final QueryBuilder next = copy(builder);
+		next.setParameter(parameter);
+		return new ImmutableQueryBuilder(next);
+	}
+
+	/**
+	 * Returns all parameters.
+	 * 
+	 * @return unmodifiable list of parameters
+	 */
+	public List<Parameter<?>> getParameters() {
+		return Collections.unmodifiableList(copy(builder).getParameters());
+	}
+
+	/**
+	 * Renders this object as {@literal JPQL} query string. The query is
+	 * rendered once and then reused.
+	 * 
+	 * @return the query as string
+	 */
+	public String render() {
+		String result = query;
+		if (result == null) {
+			result = builder.render();
+			query = result;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the structural fingerprint of this builder.
+	 * 
+	 * @return fingerprint
+	 * @see QueryBuilder#fingerprint()
+	 */
+	public long fingerprint() {
+		return builder.fingerprint();
+	}
+
+	/**
+	 * Returns a JPA Query with the parameters referenced by the query added.
+	 * 
+	 * @param manager
+	 *            JPA EntityManager
+	 * @return JPA Query
+	 */
+	public Query createQuery(final EntityManager manager) {
+		return compile().createQuery(manager);
+	}
+
+	/**
+	 * Returns a JPA TypedQuery with the parameters referenced by the query
+	 * added.
+	 * 
+	 * @param manager
+	 *            JPA EntityManager
+	 * @param type
+	 *            the type of the query result
+	 * @return JPA TypedQuery
+	 */
+	public <T> TypedQuery<T> createQuery(final EntityManager manager,
+			final Class<T> type) {
+		return compile().createQuery(manager, type);
+	}
+
+	/**
+	 * Compiles this builder into a query template. The template is created
+	 * once and then reused.
+	 * 
+	 * @return query template
+	 * @see QueryBuilder#compile()
+	 */
+	public QueryTemplate compile() {
+		QueryTemplate result = template;
+		if (result == null) {
+			final String query = render();
+			result = new QueryTemplate(query, ParameterReferences.filter(
+					copy(builder).getParameters(),
+					ParameterReferences.scan(query)));
+			template = result;
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,137 @@
+package com.tri.persistence.jpql;
+
+/**
+ * <p>
+ * Options for rendering {@literal SQL} In Expressions, see {@link WhereIn}.
+ * Values are either inlined as literals, e.g. {@code x IN (1, 2, 3)}, or bound
+ * as a single collection valued parameter, e.g. {@code x IN :p_1}. Binding
+ * renders equal queries for all value lists, which keeps the query plan caches
+ * of the {@literal JPA} provider and the database effective.
+ * </p>
+ * <p>
+ * Value lists may additionally be padded to fixed bucket sizes, see
+ * {@link InPadding}:
+ * </p>
+ * 
+ * <pre>
+ * builder.where.in("e.id", ids,
+ * 		InOptions.PARAMETER.withPadding(InPadding.POWER_OF_TWO));
+ * </pre>
+ * <p>
+ * Large value lists may be split into chunks of a maximum size, as some
+ * databases limit the number of values of In Expressions, e.g. Oracle to 1000.
+ * See {@link ChunkedInQuery} for splitting a query into several queries
+ * instead.
+ * </p>
+ * <p>
+ * Canonical value lists are sorted and free of duplicates, so equal sets of
+ * values render equal queries regardless of their order.
+ * </p>
+ * <p>
+ * {@code InOptions} objects are immutable.
+ * </p>
+ */
+public class InOptions {
+
+	/** inline values as literals */
+	public static final InOptions LITERAL = new InOptions(false, null, 0,
+			false);
+
+	/** bind values as collection valued parameter */
+	public static final InOptions PARAMETER = new InOptions(true, null, 0,
+			false);
+
+	private final boolean parameter;
+
+	private final InPadding padding;
+
+	private final int chunkSize;
+
+	private final boolean canonical;
+
+	private InOptions(final boolean parameter, final InPadding padding,
+			final int chunkSize, final boolean canonical) {
+		this.parameter = parameter;
+		this.padding = padding;
+		this.chunkSize = chunkSize;
+		this.canonical = canonical;
+	}
+
+	/**
+	 * Returns true if values are bound as parameter.
+	 * 
+	 * @return {@code true} for parameter mode, {@code false} for literals
+	 */
+	public boolean isParameter() {
+		return parameter;
+	}
+
+	/**
+	 * Returns the padding of value lists.
+	 * 
+	 * @return padding or null if value lists are not padded
+	 */
+	public InPadding getPadding() {
+		return padding;
+	}
+
+	/**
+	 * Returns options equal to these but with given padding.
+	 * 
+	 * @param padding
+	 *            padding of value lists, null for none
+	 * @return new options
+	 */
+	public InOptions withPadding(final InPadding padding) {
+		return new InOptions(parameter, padding, chunkSize, canonical);
+	}
+
+	/**
+	 * Returns the maximum number of values per chunk.
+	 * 
+	 * @return chunk size or 0 if value lists are not chunked
+	 */
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	/**
+	 * Returns options equal to these but with given chunk size. Values are
+	 * rendered as one In Expression per chunk, bound values as one parameter
+	 * per chunk.
+	 * 
+	 * @param chunkSize
+	 *            maximum number of values per chunk, 0 for no chunking
+	 * @return new options
+	 */
+	public InOptions withChunkSize(final int chunkSize) {
+		if (chunkSize < 0) {
+			throw new IllegalArgumentException(
+					"Not negative chunk size required");
+		}
+		return new InOptions(parameter, padding, chunkSize, canonical);
+	}
+
+	/**
+	 * Returns true if value lists are sorted and duplicates removed.
+	 * 
+	 * @return {@code true} for canonical value lists
+	 */
+	public boolean isCanonical() {
+		return canonical;
+	}
+
+	/**
+	 * Returns options equal to these but with given canonicalization. Values
+	 * are sorted if they are mutually comparable, duplicates are removed in
+	 * any case. Padding applies to the canonical value list.
+	 * 
+	 * @param canonical
+	 *            {@code true} to sort values and remove duplicates
+	 * @return new options
+	 */
+	public InOptions withCanonical(final boolean canonical) {
+		return new InOptions(parameter, padding, chunkSize, canonical);
+	}
+
+}
@@ -0,0 +1,77 @@
+package com.tri.persistence.jpql;
+
+/**
+ * <p>
+ * Padding of {@literal SQL} In Expression value lists to fixed bucket sizes.
+ * Value lists are padded by repeating the last value, so value lists of many
+ * different sizes render and bind as few distinct statements. This keeps the
+ * statement caches of {@literal JPA} providers and databases effective, as
+ * many providers expand collection valued parameters to one placeholder per
+ * value.
+ * </p>
+ * <p>
+ * Buckets are either powers of two or a ladder of ascending sizes. Sizes
+ * beyond the largest step of a ladder are padded to a multiple of that step.
+ * </p>
+ * <p>
+ * {@code InPadding} objects are immutable.
+ * </p>
+ * 
+ * @see InOptions#withPadding(InPadding)
+ */
+public class InPadding {
+
+	/** pad to the next power of two */
+	public static final InPadding POWER_OF_TWO = new InPadding();
+
+	private final int[] ladder;
+
+	private InPadding() {
+		this.ladder = null;
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param ladder
+	 *            ascending bucket sizes, e.g. {@code 10, 50, 100, 500}
+	 */
+	public InPadding(final int... ladder) {
+		if (ladder.length == 0) {
+			throw new IllegalArgumentException("Bucket sizes required");
+		}
+		for (int i = 0; i < ladder.length; i++) {
+			if (ladder[i] < 1 || (i > 0 && ladder[i] <= ladder[i - 1])) {
+				throw new IllegalArgumentException(
+						"Positive ascending bucket sizes required");
+			}
+		}
+		this.ladder = ladder.clone();
+	}
+
+	/**
+	 * Returns the bucket size for given number of values.
+	 * 
+	 * @param size
+	 *            number of values
+	 * @return padded number of values, not less than {@code size}
+	 */
+	public int pad(final int size) {
+		if (size <= 1) {
+			return size;
+		}
+
+		if (ladder == null) {
+			return Integer.highestOneBit(size - 1) << 1;
+		}
+
+		for (int step : ladder) {
+			if (step >= size) {
+				return step;
+			}
+		}
+		final int largest = ladder[ladder.length - 1];
+		return (size + largest - 1) / largest * largest;
+	}
+
+}
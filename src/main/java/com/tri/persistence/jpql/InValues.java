@@ -0,0 +1,287 @@
+package com.tri.persistence.jpql;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * Canonical value lists of {@literal SQL} In Expressions, i.e. sorted and
+ * without duplicates, see {@link InOptions#withCanonical(boolean)}. Lists of
+ * {@link Long} or {@link Integer} values are sorted and deduplicated as
+ * primitive arrays, without hashing, and kept in these arrays, see
+ * {@link Primitives}.
+ */
+final class InValues {
+
+	private InValues() {
+	}
+
+	/**
+	 * Returns the canonical list of given values. Values not mutually
+	 * comparable keep their order, only duplicates are removed.
+	 * 
+	 * @param values
+	 *            values
+	 * @return new list of sorted, distinct values
+	 */
+	static List<Object> canonical(final Collection<?> values) {
+		boolean longs = true;
+		boolean ints = true;
+		Class<?> type = null;
+		boolean comparable = true;
+		for (Object value : values) {
+			longs &= value instanceof Long;
+			ints &= value instanceof Integer;
+			if (comparable) {
+				if (value instanceof Comparable == false) {
+					comparable = false;
+				} else {
+					// constants of enums with bodies are subclasses
+					final Class<?> valueType = value instanceof Enum ? ((Enum<?>) value)
+							.getDeclaringClass() : value.getClass();
+					if (type == null) {
+						type = valueType;
+					} else if (type != valueType) {
+						comparable = false;
+					}
+				}
+			}
+		}
+
+		if (longs) {
+			final long[] array = new long[values.size()];
+			int i = 0;
+			for (Object value : values) {
+				array[i++] = (Long) value;
+			}
+			return canonical(array);
+		}
+		if (ints) {
+			final int[] array = new int[values.size()];
+			int i = 0;
+			for (Object value : values) {
+				array[i++] = (Integer) value;
+			}
+			return canonical(array);
+		}
+		if (comparable == false) {
+			return new ArrayList<Object>(new LinkedHashSet<Object>(values));
+		}
+
+		final Set<Object> distinct = new HashSet<Object>(values);
+		final List<Object> result = new ArrayList<Object>(distinct);
+		sort(result);
+		return result;
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static void sort(final List<Object> values) {
+		Collections.sort((List) values);
+	}
+
+	/**
+	 * Returns a copy of given values, backed by a primitive array if given
+	 * values are.
+	 * 
+	 * @param values
+	 *            values
+	 * @return new, modifiable list of values
+	 */
+	static List<Object> copy(final Collection<?> values) {
+		if (values instanceof Primitives) {
+			return ((Primitives) values).copy();
+		}
+		return new ArrayList<Object>(values);
+	}
+
+	/**
+	 * Returns the canonical list of given values.
+	 * 
+	 * @param values
+	 *            values, sorted in place
+	 * @return new list of sorted, distinct values
+	 */
+	static List<Object> canonical(final long[] values) {
+		Arrays.sort(values);
+		return new Primitives(values, distinct(values), false);
+	}
+
+	/**
+	 * Returns the canonical list of given values.
+	 * 
+	 * @param values
+	 *            values, sorted in place
+	 * @return new list of sorted, distinct values
+	 */
+	static List<Object> canonical(final int[] values) {
+		Arrays.sort(values);
+		final long[] array = new long[values.length];
+		for (int i = 0; i < values.length; i++) {
+			array[i] = values[i];
+		}
+		return new Primitives(array, distinct(array), true);
+	}
+
+	/**
+	 * Moves the distinct values of given sorted array to its start.
+	 * 
+	 * @return number of distinct values
+	 */
+	private static int distinct(final long[] values) {
+		int size = 0;
+		for (int i = 0; i < values.length; i++) {
+			if (i == 0 || values[i] != values[size - 1]) {
+				values[size++] = values[i];
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Returns given values as list.
+	 * 
+	 * @param values
+	 *            values, not changed
+	 * @param canonical
+	 *            {@code true} to sort values and remove duplicates
+	 * @return new list of values
+	 */
+	static List<Object> of(final long[] values, final boolean canonical) {
+		if (canonical) {
+			return canonical(values.clone());
+		}
+		return new Primitives(values.clone(), values.length, false);
+	}
+
+	/**
+	 * Returns given values as list.
+	 * 
+	 * @param values
+	 *            values, not changed
+	 * @param canonical
+	 *            {@code true} to sort values and remove duplicates
+	 * @return new list of values
+	 */
+	static List<Object> of(final int[] values, final boolean canonical) {
+		if (canonical) {
+			return canonical(values.clone());
+		}
+		final long[] array = new long[values.length];
+		for (int i = 0; i < values.length; i++) {
+			array[i] = values[i];
+		}
+		return new Primitives(array, array.length, true);
+	}
+
+	/**
+	 * List of {@link Long} or {@link Integer} values backed by a
+	 * {@code long} array. Values are boxed by {@link #get(int)} only, e.g.
+	 * when bound as parameter, rendering reads them by {@link #getLong(int)}.
+	 * Values can be appended, e.g. for padding.
+	 */
+	static final class Primitives extends AbstractList<Object> implements
+			RandomAccess {
+
+		private long[] values;
+
+		private int size;
+
+		/** true for {@link Integer} values */
+		private final boolean ints;
+
+		Primitives(final long[] values, final int size, final boolean ints) {
+			this.values = values;
+			this.size = size;
+			this.ints = ints;
+		}
+
+		/**
+		 * Returns the value at given index without boxing.
+		 * 
+		 * @param index
+		 *            index
+		 * @return value
+		 */
+		long getLong(final int index) {
+			if (index >= size) {
+				throw new IndexOutOfBoundsException("Index: " + index
+						+ ", Size: " + size);
+			}
+			return values[index];
+		}
+
+		Primitives copy() {
+			return new Primitives(Arrays.copyOf(values, size), size, ints);
+		}
+
+		@Override
+		public Object get(final int index) {
+			final long value = getLong(index);
+			if (ints) {
+				return (int) value;
+			}
+			return value;
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public void add(final int index, final Object element) {
+			if (index != size) {
+				throw new UnsupportedOperationException(
+						"Values can be appended only");
+			}
+			if (ints ? element instanceof Integer == false
+					: element instanceof Long == false) {
+				throw new IllegalArgumentException("Unexpected value type: "
+						+ element);
+			}
+			if (size == values.length) {
+				values = Arrays.copyOf(values, Math.max(size * 2, 8));
+			}
+			values[size++] = ((Number) element).longValue();
+			modCount++;
+		}
+
+		@Override
+		public boolean equals(final Object other) {
+			if (other instanceof Primitives) {
+				final Primitives primitives = (Primitives) other;
+				if (ints != primitives.ints || size != primitives.size) {
+					return false;
+				}
+				for (int i = 0; i < size; i++) {
+					if (values[i] != primitives.values[i]) {
+						return false;
+					}
+				}
+				return true;
+			}
+			return super.equals(other);
+		}
+
+		@Override
+		public int hashCode() {
+			// as List.hashCode() of the boxed values
+			int result = 1;
+			for (int i = 0; i < size; i++) {
+				final long value = values[i];
+				result = 31 * result
+						+ (ints ? (int) value : (int) (value ^ (value >>> 32)));
+			}
+			return result;
+		}
+
+	}
+
+}
@@ -0,0 +1,63 @@
+package com.tri.persistence.jpql;
+
+import java.util.List;
+
+/**
+ * One page of results read by a {@link KeysetQuery}. {@code KeysetPage}
+ * objects are immutable.
+ * 
+ * @param <T>
+ *            result type
+ */
+public class KeysetPage<T> {
+
+	private final List<T> results;
+
+	private final Object[] lastKey;
+
+	private final String nextToken;
+
+	KeysetPage(final List<T> results, final Object[] lastKey,
+			final String nextToken) {
+		this.results = results;
+		this.lastKey = lastKey;
+		this.nextToken = nextToken;
+	}
+
+	/**
+	 * Returns the results of this page.
+	 * 
+	 * @return unmodifiable list of results
+	 */
+	public List<T> getResults() {
+		return results;
+	}
+
+	/**
+	 * Returns the sort-key values of the last result of this page.
+	 * 
+	 * @return copy of the key values or null if this page is empty
+	 */
+	public Object[] getLastKey() {
+		return lastKey == null ? null : lastKey.clone();
+	}
+
+	/**
+	 * Returns the continuation token for reading the next page.
+	 * 
+	 * @return token or null if this is the last page
+	 */
+	public String getNextToken() {
+		return nextToken;
+	}
+
+	/**
+	 * Returns true if there is a next page.
+	 * 
+	 * @return {@code true} if there are more results
+	 */
+	public boolean hasNext() {
+		return nextToken != null;
+	}
+
+}
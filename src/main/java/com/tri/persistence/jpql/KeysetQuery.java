@@ -0,0 +1,455 @@
+package com.tri.persistence.jpql;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.OffsetTime;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+
+/**
+ * <p>
+ * Reads the results of a query page by page using keyset (seek) pagination.
+ * Instead of skipping rows with an offset each page continues after the
+ * sort-key values of the last row of the previous page, so every page costs
+ * the same as the first one, given an index on the sort columns.
+ * </p>
+ * 
+ * <pre>
+ * KeysetQuery pages = new KeysetQuery(builder, 100, new OrderColumn(
+ * 		"e.created", Order.DESC), new OrderColumn("e.id"));
+ * Function&lt;Entity, Object[]&gt; key = e -&gt; new Object[] { e.getCreated(),
+ * 		e.getId() };
+ * KeysetPage&lt;Entity&gt; page = pages.firstPage(entityManager, Entity.class, key);
+ * ...
+ * page = pages.getPage(entityManager, Entity.class, key, page.getNextToken());
+ * </pre>
+ * <p>
+ * The order columns are added to the Order By Clause of each page query, so
+ * the given builder must not have an Order By Clause. The last column must be
+ * unique, e.g. the id, and the sort-key values must not be null. The given
+ * builder is not changed.
+ * </p>
+ * <p>
+ * Continuation tokens are the Base64 encoded key values, written in a plain
+ * format of typed values, not by Java serialization. Supported key values are
+ * boxed primitives, strings, {@link BigInteger}, {@link BigDecimal},
+ * {@link UUID}, {@link Date} and its {@code java.sql} subclasses, the
+ * {@code java.time} types {@link Instant}, {@link LocalDate},
+ * {@link LocalTime}, {@link LocalDateTime}, {@link OffsetDateTime},
+ * {@link OffsetTime} and {@link ZonedDateTime}, and enums.
+ * </p>
+ */
+public class KeysetQuery {
+
+	/** format version of continuation tokens */
+	private static final int TOKEN_VERSION = 1;
+
+	/** maximum number of characters of a continuation token read */
+	private static final int MAX_TOKEN_LENGTH = 8192;
+
+	/** maximum number of key values of a continuation token */
+	private static final int MAX_KEY_VALUES = 32;
+
+	/** tags of the {@code java.time} types, written in ISO-8601 format */
+	private static final Map<Class<?>, Character> TEMPORAL_TAGS = new HashMap<Class<?>, Character>();
+
+	static {
+		TEMPORAL_TAGS.put(Instant.class, 'a');
+		TEMPORAL_TAGS.put(LocalDate.class, 'b');
+		TEMPORAL_TAGS.put(LocalTime.class, 'c');
+		TEMPORAL_TAGS.put(LocalDateTime.class, 'e');
+		TEMPORAL_TAGS.put(OffsetDateTime.class, 'f');
+		TEMPORAL_TAGS.put(OffsetTime.class, 'g');
+		TEMPORAL_TAGS.put(ZonedDateTime.class, 'h');
+	}
+
+	private final QueryBuilder builder;
+
+	private final int pageSize;
+
+	private final OrderColumn[] columns;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param builder
+	 *            query to read page by page, without Order By Clause
+	 * @param pageSize
+	 *            maximum number of results per page
+	 * @param columns
+	 *            sort columns, the last one must be unique
+	 * @throws IllegalArgumentException
+	 *             if the builder has an Order By Clause
+	 */
+	public KeysetQuery(final QueryBuilder builder, final int pageSize,
+			final OrderColumn... columns) {
+		if (builder == null) {
+			throw new NullPointerException("Query builder required");
+		}
+		if (pageSize < 1) {
+			throw new IllegalArgumentException("Positive page size required");
+		}
+		if (columns.length == 0) {
+			throw new IllegalArgumentException("Order column required");
+		}
+		if (builder.order.isEmpty() == false) {
+			throw new IllegalArgumentException(
+					"Query builder without Order By Clause required, "
+							+ "use order columns instead");
+		}
+		this.builder = builder;
+		this.pageSize = pageSize;
+		this.columns = columns.clone();
+	}
+
+	/**
+	 * Reads the first page.
+	 * 
+	 * @param manager
+	 *            JPA EntityManager
+	 * @param type
+	 *            the type of the query result
+	 * @param keyExtractor
+	 *            returns the sort-key values of a result, one per order column
+	 * @return first page of results
+	 */
+	public <T> KeysetPage<T> firstPage(final EntityManager manager,
+			final Class<T> type, final Function<? super T, Object[]> keyExtractor) {
+		return getPage(manager, type, keyExtractor, (Object[]) null);
+	}
+
+	/**
+	 * Reads the page following given continuation token.
+	 * 
+	 * @param manager
+	 *            JPA EntityManager
+	 * @param type
+	 *            the type of the query result
+	 * @param keyExtractor
+	 *            returns the sort-key values of a result, one per order column
+	 * @param token
+	 *            continuation token of the previous page, see
+	 *            {@link #firstPage(EntityManager, Class, Function)} for the
+	 *            first page
+	 * @return page of results
+	 */
+	public <T> KeysetPage<T> getPage(final EntityManager manager,
+			final Class<T> type, final Function<? super T, Object[]> keyExtractor,
+			final String token) {
+		return getPage(manager, type, keyExtractor,
+				token == null ? null : decode(token));
+	}
+
+	/**
+	 * Reads the page following given sort-key values.
+	 * 
+	 * @param manager
+	 *            JPA EntityManager
+	 * @param type
+	 *            the type of the query result
+	 * @param keyExtractor
+	 *            returns the sort-key values of a result, one per order column
+	 * @param lastKey
+	 *            sort-key values of the last result of the previous page, see
+	 *            {@link #firstPage(EntityManager, Class, Function)} for the
+	 *            first page
+	 * @return page of results
+	 */
+	public <T> KeysetPage<T> getPage(final EntityManager manager,
+			final Class<T> type, final Function<? super T, Object[]> keyExtractor,
+			final Object[] lastKey) {
+		final TypedQuery<T> query = createPageQuery(lastKey).createQuery(
+				manager, type);
+		// one more row tells whether there is a next page
+		query.setMaxResults(pageSize + 1);
+		final List<T> results = new ArrayList<T>(query.getResultList());
+
+		final boolean hasNext = results.size() > pageSize;
+		if (hasNext) {
+			results.subList(pageSize, results.size()).clear();
+		}
+		final Object[] key = results.isEmpty() ? null : keyExtractor
+				.apply(results.get(results.size() - 1));
+		return new KeysetPage<T>(Collections.unmodifiableList(results), key,
+				hasNext ? encode(key) : null);
+	}
+
+	/**
+	 * Returns a clone of the builder ordered by the order columns and
+	 * restricted to rows following given sort-key values, e.g.
+	 * {@code (a > :p_1 OR (a = :p_1 AND b > :p_2))}.
+	 * 
+	 * @param lastKey
+	 *            sort-key values of the last result of the previous page, null
+	 *            for the first page
+	 * @return page query
+	 */
+	public QueryBuilder createPageQuery(final Object[] lastKey) {
+		final QueryBuilder query;
+		try {
+			query = (QueryBuilder) builder.clone();
+		} catch (CloneNotSupportedException e) {
+			throw new IllegalStateException(e);
+		}
+		for (OrderColumn column : columns) {
+			query.order.add(column.render());
+		}
+		if (lastKey == null) {
+			return query;
+		}
+		if (lastKey.length != columns.length) {
+			throw new IllegalArgumentException("Expected " + columns.length
+					+ " key values, got " + lastKey.length);
+		}
+
+		final String[] names = new String[columns.length];
+		for (int i = 0; i < columns.length; i++) {
+			if (lastKey[i] == null) {
+				throw new IllegalArgumentException("Key value " + i
+						+ " is null");
+			}
+			names[i] = query.generateParameterName();
+			query.setParameter(names[i], lastKey[i]);
+		}
+
+		final WhereOr or = query.where.or();
+		for (int i = 0; i < columns.length; i++) {
+			final String following = columns[i].getColumn()
+					+ (columns[i].getOrder() == Order.DESC ? " < :" : " > :")
+					+ names[i];
+			if (i == 0) {
+				or.add(following);
+			} else {
+				final WhereAnd and = or.and();
+				for (int j = 0; j < i; j++) {
+					and.add(columns[j].getColumn() + " = :" + names[j]);
+				}
+				and.add(following);
+			}
+		}
+		return query;
+	}
+
+	/**
+	 * Encodes given sort-key values as continuation token.
+	 * 
+	 * @param key
+	 *            key values of the supported types, see {@link KeysetQuery}
+	 * @return continuation token
+	 * @throws IllegalArgumentException
+	 *             if a key value is null or of another type
+	 */
+	static String encode(final Object[] key) {
+		if (key.length > MAX_KEY_VALUES) {
+			throw new IllegalArgumentException("At most " + MAX_KEY_VALUES
+					+ " key values supported");
+		}
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeByte(TOKEN_VERSION);
+			out.writeByte(key.length);
+			for (Object value : key) {
+				write(out, value);
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return Base64.getUrlEncoder().withoutPadding()
+				.encodeToString(bytes.toByteArray());
+	}
+
+	private static void write(final DataOutputStream out, final Object value)
+			throws IOException {
+		final Class<?> type = value == null ? null : value.getClass();
+		if (type == Long.class) {
+			out.writeByte('J');
+			out.writeLong((Long) value);
+		} else if (type == Integer.class) {
+			out.writeByte('I');
+			out.writeInt((Integer) value);
+		} else if (type == Short.class) {
+			out.writeByte('S');
+			out.writeShort((Short) value);
+		} else if (type == Byte.class) {
+			out.writeByte('B');
+			out.writeByte((Byte) value);
+		} else if (type == Double.class) {
+			out.writeByte('D');
+			out.writeDouble((Double) value);
+		} else if (type == Float.class) {
+			out.writeByte('F');
+			out.writeFloat((Float) value);
+		} else if (type == Boolean.class) {
+			out.writeByte('Z');
+			out.writeBoolean((Boolean) value);
+		} else if (type == Character.class) {
+			out.writeByte('C');
+			out.writeChar((Character) value);
+		} else if (type == String.class) {
+			out.writeByte('T');
+			out.writeUTF((String) value);
+		} else if (type == BigInteger.class || type == BigDecimal.class) {
+			out.writeByte(type == BigInteger.class ? 'N' : 'M');
+			out.writeUTF(value.toString());
+		} else if (type == UUID.class) {
+			out.writeByte('U');
+			out.writeLong(((UUID) value).getMostSignificantBits());
+			out.writeLong(((UUID) value).getLeastSignificantBits());
+		} else if (type == Date.class || type == java.sql.Date.class
+				|| type == Time.class) {
+			out.writeByte(type == Date.class ? 'd' : type == Time.class ? 't'
+					: 's');
+			out.writeLong(((Date) value).getTime());
+		} else if (type == Timestamp.class) {
+			out.writeByte('p');
+			out.writeLong(((Timestamp) value).getTime());
+			out.writeInt(((Timestamp) value).getNanos());
+		} else if (TEMPORAL_TAGS.containsKey(type)) {
+			out.writeByte(TEMPORAL_TAGS.get(type));
+			out.writeUTF(value.toString());
+		} else if (value instanceof Enum<?>) {
+			out.writeByte('E');
+			out.writeUTF(((Enum<?>) value).getDeclaringClass().getName());
+			out.writeUTF(((Enum<?>) value).name());
+		} else {
+			throw new IllegalArgumentException(
+					"Unsupported key value type for continuation token: "
+							+ (type == null ? "null" : type.getName()));
+		}
+	}
+
+	/**
+	 * Decodes given continuation token.
+	 * 
+	 * @param token
+	 *            continuation token
+	 * @return key values
+	 * @throws IllegalArgumentException
+	 *             if the token is invalid
+	 */
+	static Object[] decode(final String token) {
+		if (token.length() > MAX_TOKEN_LENGTH) {
+			throw new IllegalArgumentException("Invalid continuation token");
+		}
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+				Base64.getUrlDecoder().decode(token)))) {
+			if (in.readUnsignedByte() != TOKEN_VERSION) {
+				throw new IllegalArgumentException(
+						"Invalid continuation token");
+			}
+			final Object[] result = new Object[in.readUnsignedByte()];
+			if (result.length > MAX_KEY_VALUES) {
+				throw new IllegalArgumentException(
+						"Invalid continuation token");
+			}
+			for (int i = 0; i < result.length; i++) {
+				result[i] = read(in);
+			}
+			if (in.read() != -1) {
+				throw new IllegalArgumentException(
+						"Invalid continuation token");
+			}
+			return result;
+		} catch (IOException | RuntimeException e) {
+			throw new IllegalArgumentException("Invalid continuation token", e);
+		}
+	}
+
+	private static Object read(final DataInputStream in) throws IOException {
+		final char tag = (char) in.readUnsignedByte();
+		switch (tag) {
+		case 'J':
+			return in.readLong();
+		case 'I':
+			return in.readInt();
+		case 'S':
+			return in.readShort();
+		case 'B':
+			return in.readByte();
+		case 'D':
+			return in.readDouble();
+		case 'F':
+			return in.readFloat();
+		case 'Z':
+			return in.readBoolean();
+		case 'C':
+			return in.readChar();
+		case 'T':
+			return in.readUTF();
+		case 'N':
+			return new BigInteger(in.readUTF());
+		case 'M':
+			return new BigDecimal(in.readUTF());
+		case 'U':
+			return new UUID(in.readLong(), in.readLong());
+		case 'd':
+			return new Date(in.readLong());
+		case 's':
+			return new java.sql.Date(in.readLong());
+		case 't':
+			return new Time(in.readLong());
+		case 'p':
+			final Timestamp timestamp = new Timestamp(in.readLong());
+			timestamp.setNanos(in.readInt());
+			return timestamp;
+		case 'a':
+			return Instant.parse(in.readUTF());
+		case 'b':
+			return LocalDate.parse(in.readUTF());
+		case 'c':
+			return LocalTime.parse(in.readUTF());
+		case 'e':
+			return LocalDateTime.parse(in.readUTF());
+		case 'f':
+			return OffsetDateTime.parse(in.readUTF());
+		case 'g':
+			return OffsetTime.parse(in.readUTF());
+		case 'h':
+			return ZonedDateTime.parse(in.readUTF());
+		case 'E':
+			return readEnum(in.readUTF(), in.readUTF());
+		default:
+			throw new IllegalArgumentException("Unknown key value type " + tag);
+		}
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static Object readEnum(final String type, final String name) {
+		final Class<?> enumType;
+		try {
+			// not initialized unless it is an enum
+			enumType = Class.forName(type, false,
+					KeysetQuery.class.getClassLoader());
+		} catch (ClassNotFoundException e) {
+			throw new IllegalArgumentException("Unknown enum " + type, e);
+		}
+		if (enumType.isEnum() == false) {
+			throw new IllegalArgumentException("Not an enum: " + type);
+		}
+		return Enum.valueOf((Class) enumType, name);
+	}
+
+}
@@ -0,0 +1,194 @@
+package com.tri.persistence.jpql;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Query;
+import javax.persistence.TypedQuery;
+
+/**
+ * <p>
+ * Registers builders as named queries of an {@link EntityManagerFactory}, so
+ * the {@literal JPA} provider parses each query once at startup instead of on
+ * every execution. Builders are compiled into {@link QueryTemplate}s when
+ * added, the templates' parameter slots are used to bind values to the named
+ * queries.
+ * </p>
+ * 
+ * <pre>
+ * // bootstrap
+ * registry.add("Entity.byName", new QueryBuilder().select.add("e").from
+ * 		.add("Entity e").where.add("e.name=:name").builder()
+ * 		.setParameter("name", null));
+ * registry.register(entityManagerFactory);
+ * ...
+ * registry.createQuery(entityManager, "Entity.byName", Entity.class, "xyz")
+ * 		.getResultList();
+ * </pre>
+ * <p>
+ * {@code NamedQueryRegistry} objects are thread-safe.
+ * </p>
+ */
+public class NamedQueryRegistry {
+
+	private final Map<String, QueryTemplate> templates =
+			new ConcurrentHashMap<String, QueryTemplate>();
+
+	/**
+	 * Compiles given builder and adds it under given name. Changes of the
+	 * builder after adding it are not reflected.
+	 * 
+	 * @param name
+	 *            query name
+	 * @param builder
+	 *            query to add
+	 * @return this object, fluent api support
+	 */
+	public NamedQueryRegistry add(final String name, final QueryBuilder builder) {
+		return add(name, builder.compile());
+	}
+
+	/**
+	 * Adds given template under given name.
+	 * 
+	 * @param name
+	 *            query name
+	 * @param template
+	 *            query to add
+	 * @return this object, fluent api support
+	 */
+	public NamedQueryRegistry add(final String name,
+			final QueryTemplate template) {
+		if (name == null) {
+			throw new NullPointerException("Name required");
+		}
+		templates.put(name, template);
+		return this;
+	}
+
+	/**
+	 * Returns the template added under given name.
+	 * 
+	 * @param name
+	 *            query name
+	 * @return the template or null if there is none
+	 */
+	public QueryTemplate getTemplate(final String name) {
+		return templates.get(name);
+	}
+
+	/**
+	 * Returns all added templates by name.
+	 * 
+	 * @return unmodifiable map of templates
+	 */
+	public Map<String, QueryTemplate> getTemplates() {
+		return Collections
+				.unmodifiableMap(new LinkedHashMap<String, QueryTemplate>(
+						templates));
+	}
+
+	/**
+	 * Registers all added queries as named queries of given factory, replacing
+	 * named queries of the same name. Requires {@literal JPA} 2.1.
+	 * 
+	 * @param factory
+	 *            JPA EntityManagerFactory
+	 */
+	public void register(final EntityManagerFactory factory) {
+		if (factory == null) {
+			throw new NullPointerException("Entity Manager Factory required");
+		}
+
+		final EntityManager manager = factory.createEntityManager();
+		try {
+			for (Map.Entry<String, QueryTemplate> entry : templates.entrySet()) {
+				factory.addNamedQuery(entry.getKey(),
+						manager.createQuery(entry.getValue().getQuery()));
+			}
+		} finally {
+			manager.close();
+		}
+	}
+
+	/**
+	 * Returns the named JPA Query with the parameter values set at compile
+	 * time.
+	 * 
+	 * @param manager
+	 *            JPA EntityManager
+	 * @param name
+	 *            query name
+	 * @return JPA Query
+	 */
+	public Query createQuery(final EntityManager manager, final String name) {
+		return getRequiredTemplate(name).bind(manager.createNamedQuery(name));
+	}
+
+	/**
+	 * Returns the named JPA Query with given parameter values bound.
+	 * 
+	 * @param manager
+	 *            JPA EntityManager
+	 * @param name
+	 *            query name
+	 * @param values
+	 *            one value per parameter slot, in slot order
+	 * @return JPA Query
+	 */
+	public Query createQuery(final EntityManager manager, final String name,
+			final Object... values) {
+		return getRequiredTemplate(name).bind(manager.createNamedQuery(name),
+				values);
+	}
+
+	/**
+	 * Returns the named JPA TypedQuery with the parameter values set at
+	 * compile time.
+	 * 
+	 * @param manager
+	 *            JPA EntityManager
+	 * @param name
+	 *            query name
+	 * @param type
+	 *            the type of the query result
+	 * @return JPA TypedQuery
+	 */
+	public <T> TypedQuery<T> createQuery(final EntityManager manager,
+			final String name, final Class<T> type) {
+		return getRequiredTemplate(name).bind(
+				manager.createNamedQuery(name, type));
+	}
+
+	/**
+	 * Returns the named JPA TypedQuery with given parameter values bound.
+	 * 
+	 * @param manager
+	 *            JPA EntityManager
+	 * @param name
+	 *            query name
+	 * @param type
+	 *            the type of the query result
+	 * @param values
+	 *            one value per parameter slot, in slot order
+	 * @return JPA TypedQuery
+	 */
+	public <T> TypedQuery<T> createQuery(final EntityManager manager,
+			final String name, final Class<T> type, final Object... values) {
+		return getRequiredTemplate(name).bind(
+				manager.createNamedQuery(name, type), values);
+	}
+
+	private QueryTemplate getRequiredTemplate(final String name) {
+		final QueryTemplate template = templates.get(name);
+		if (template == null) {
+			throw new IllegalArgumentException("Unknown query " + name);
+		}
+		return template;
+	}
+
+}
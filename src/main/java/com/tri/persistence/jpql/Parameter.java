@@ -1,5 +1,6 @@
 package com.tri.persistence.jpql;
 
+import java.util.Arrays;
 import java.util.Date;
 
 import javax.persistence.Query;
@@ -63,4 +64,26 @@ abstract public class Parameter<T> {
 	 */
 	public abstract void apply(Query query);
 
-}
+	/**
+	 * Returns a copy of this parameter with given name, used to rename
+	 * generated parameters of copied sub-queries, see
+	 * {@link WhereItems#subquery(String, QueryBuilder)}.
+	 * 
+	 * @param name
+	 *            new name
+	 * @return renamed copy, null if this parameter cannot be renamed
+	 */
+	Parameter<T> rename(final String name) {
+		return null;
+	}
+
+	/**
+	 * Returns a key equal for parameters binding the same value the same way.
+	 * 
+	 * @return key of this parameter
+	 */
+	Object key() {
+		return Arrays.asList(getClass(), name, position, value);
+	}
+
+}
\ No newline at end of file
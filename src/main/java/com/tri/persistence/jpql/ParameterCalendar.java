@@ -1,5 +1,6 @@
 package com.tri.persistence.jpql;
 
+import java.util.Arrays;
 import java.util.Calendar;
 
 import javax.persistence.Query;
@@ -38,6 +39,11 @@ public class ParameterCalendar extends Parameter<Calendar> {
 		this.temporalType = temporalType;
 	}
 
+	@Override
+	ParameterCalendar rename(final String name) {
+		return new ParameterCalendar(name, value, temporalType);
+	}
+
 	@Override
 	public void apply(final Query query) {
 		if (name != null) {
@@ -50,4 +56,9 @@ public class ParameterCalendar extends Parameter<Calendar> {
 		}
 	}
 
+	@Override
+	Object key() {
+		return Arrays.asList(super.key(), temporalType);
+	}
+
 }
\ No newline at end of file
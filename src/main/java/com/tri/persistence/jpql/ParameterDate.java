@@ -1,5 +1,6 @@
 package com.tri.persistence.jpql;
 
+import java.util.Arrays;
 import java.util.Date;
 
 import javax.persistence.Query;
@@ -38,6 +39,11 @@ public class ParameterDate extends Parameter<Date> {
 		this.temporalType = temporalType;
 	}
 
+	@Override
+	ParameterDate rename(final String name) {
+		return new ParameterDate(name, value, temporalType);
+	}
+
 	@Override
 	public void apply(final Query query) {
 		if (name != null) {
@@ -50,4 +56,9 @@ public class ParameterDate extends Parameter<Date> {
 		}
 	}
 
+	@Override
+	Object key() {
+		return Arrays.asList(super.key(), temporalType);
+	}
+
 }
\ No newline at end of file
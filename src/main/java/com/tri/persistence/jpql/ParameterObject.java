@@ -35,6 +35,11 @@ public class ParameterObject extends Parameter<Object> {
 		super(position, value);
 	}
 
+	@Override
+	ParameterObject rename(final String name) {
+		return new ParameterObject(name, value);
+	}
+
 	@Override
 	public void apply(final Query query) {
 		if (name != null) {
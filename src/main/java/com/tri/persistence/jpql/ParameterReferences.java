@@ -0,0 +1,130 @@
+package com.tri.persistence.jpql;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds the parameters referenced by a rendered {@literal JPQL} query, i.e.
+ * its {@code :name} and {@code ?n} tokens outside of string literals.
+ */
+final class ParameterReferences {
+
+	private ParameterReferences() {
+	}
+
+	/**
+	 * Scans given query for parameter references.
+	 * 
+	 * @param query
+	 *            rendered {@literal JPQL} query
+	 * @return unmodifiable set of referenced names (String) and positions
+	 *         (Integer)
+	 */
+	static Set<Object> scan(final CharSequence query) {
+		final Set<Object> result = new HashSet<Object>();
+		final int length = query.length();
+		int i = 0;
+		while (i < length) {
+			final char c = query.charAt(i++);
+			if (c == '\'') {
+				// skip literal, an escaped quote '' ends and reopens it
+				while (i < length && query.charAt(i++) != '\'') {
+				}
+			} else if (c == ':' && i < length
+					&& Character.isJavaIdentifierStart(query.charAt(i))) {
+				final int start = i;
+				while (i < length
+						&& Character.isJavaIdentifierPart(query.charAt(i))) {
+					i++;
+				}
+				result.add(query.subSequence(start, i).toString());
+			} else if (c == '?' && i < length
+					&& Character.isDigit(query.charAt(i))) {
+				int position = 0;
+				while (i < length && Character.isDigit(query.charAt(i))) {
+					position = position * 10 + query.charAt(i++) - '0';
+				}
+				result.add(position);
+			}
+		}
+		return Collections.unmodifiableSet(result);
+	}
+
+	/**
+	 * Renames the {@code :name} references of given predicate outside of
+	 * string literals.
+	 * 
+	 * @param predicate
+	 *            {@literal JPQL} fragment
+	 * @param names
+	 *            new names by previous name
+	 * @return given predicate if no reference has been renamed, a renamed
+	 *         copy otherwise
+	 */
+	static String rename(final String predicate,
+			final Map<String, String> names) {
+		StringBuilder result = null;
+		int copied = 0;
+		final int length = predicate.length();
+		int i = 0;
+		while (i < length) {
+			final char c = predicate.charAt(i++);
+			if (c == '\'') {
+				while (i < length && predicate.charAt(i++) != '\'') {
+				}
+			} else if (c == ':' && i < length
+					&& Character.isJavaIdentifierStart(predicate.charAt(i))) {
+				final int start = i;
+				while (i < length
+						&& Character.isJavaIdentifierPart(predicate.charAt(i))) {
+					i++;
+				}
+				final String name = names.get(predicate.substring(start, i));
+				if (name != null) {
+					if (result == null) {
+						result = new StringBuilder(length + 8);
+					}
+					result.append(predicate, copied, start).append(name);
+					copied = i;
+				}
+			}
+		}
+		if (result == null) {
+			return predicate;
+		}
+		return result.append(predicate, copied, length).toString();
+	}
+
+	/**
+	 * Returns the parameters referenced by name or position.
+	 * 
+	 * @param parameters
+	 *            parameters to filter
+	 * @param references
+	 *            referenced names and positions, see {@link #scan(CharSequence)}
+	 * @return given list if all parameters are referenced, a filtered copy
+	 *         otherwise
+	 */
+	static List<Parameter<?>> filter(final List<Parameter<?>> parameters,
+			final Set<Object> references) {
+		List<Parameter<?>> result = parameters;
+		for (int i = 0; i < parameters.size(); i++) {
+			final Parameter<?> parameter = parameters.get(i);
+			final Object key = parameter.name != null ? parameter.name
+					: parameter.position;
+			// keep invalid parameters, binding reports them
+			final boolean referenced = key == null || references.contains(key);
+			if (referenced == false && result == parameters) {
+				result = new ArrayList<Parameter<?>>(parameters.subList(0, i));
+			} else if (referenced && result != parameters) {
+				result.add(parameter);
+			}
+		}
+		return result;
+	}
+
+}
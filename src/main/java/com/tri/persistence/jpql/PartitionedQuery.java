@@ -0,0 +1,284 @@
+package com.tri.persistence.jpql;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import javax.persistence.EntityManager;
+
+/**
+ * <p>
+ * Executes a query as several partition queries in parallel, each one on its
+ * own EntityManager. Each partition query is a clone of the given builder with
+ * a partition predicate added to its Where Clause, the partitions must not
+ * overlap and together cover all rows.
+ * </p>
+ * 
+ * <pre>
+ * QueryBuilder builder = new QueryBuilder().select.add("e").from
+ * 		.add("Entity e").where.add("e.active=true").builder();
+ * List&lt;Entity&gt; result = PartitionedQuery.modulo(builder, "e.id", 8)
+ * 		.getResultList(factory::createEntityManager, executor, Entity.class);
+ * </pre>
+ * <p>
+ * The given builder is not changed. Ordering and paging of the builder apply
+ * per partition, not to the merged result. Each EntityManager is obtained
+ * from the given supplier on the executing thread and closed after its
+ * partition query completed.
+ * </p>
+ */
+public class PartitionedQuery {
+
+	private final List<QueryBuilder> queries;
+
+	/**
+	 * Constructor, one partition per given predicate.
+	 * 
+	 * @param builder
+	 *            query to execute per partition
+	 * @param predicates
+	 *            partition predicates, e.g. {@code e.region='EU'}
+	 */
+	public PartitionedQuery(final QueryBuilder builder,
+			final String... predicates) {
+		this(new ArrayList<QueryBuilder>(predicates.length));
+		for (String predicate : predicates) {
+			queries.add(partition(builder).where.add(predicate).builder());
+		}
+	}
+
+	private PartitionedQuery(final List<QueryBuilder> queries) {
+		this.queries = queries;
+	}
+
+	/**
+	 * Partitions by the remainder of given integral expression, i.e.
+	 * {@code MOD(expression, n) = r} for each remainder {@code r}. The
+	 * expression must not be negative.
+	 * 
+	 * @param builder
+	 *            query to execute per partition
+	 * @param expression
+	 *            integral {@literal JPQL} expression, e.g. {@code e.id}
+	 * @param partitions
+	 *            number of partitions
+	 * @return partitioned query
+	 */
+	public static PartitionedQuery modulo(final QueryBuilder builder,
+			final String expression, final int partitions) {
+		if (partitions < 1) {
+			throw new IllegalArgumentException(
+					"Positive number of partitions required");
+		}
+		final PartitionedQuery result = new PartitionedQuery(
+				new ArrayList<QueryBuilder>(partitions));
+		for (int i = 0; i < partitions; i++) {
+			final QueryBuilder query = partition(builder);
+			final String modulus = query.generateParameterName();
+			final String remainder = query.generateParameterName();
+			query.where.add("MOD(" + expression + ", :" + modulus + ") = :"
+					+ remainder);
+			query.setParameter(modulus, partitions).setParameter(remainder, i);
+			result.queries.add(query);
+		}
+		return result;
+	}
+
+	/**
+	 * Partitions by ranges of given expression, partition {@code i} covers
+	 * {@code bounds[i] <= expression < bounds[i + 1]}. Rows outside of the
+	 * first and last bound are not read.
+	 * 
+	 * @param builder
+	 *            query to execute per partition
+	 * @param expression
+	 *            {@literal JPQL} expression, e.g. {@code e.id}
+	 * @param bounds
+	 *            ascending range bounds, at least two
+	 * @return partitioned query
+	 */
+	public static PartitionedQuery ranges(final QueryBuilder builder,
+			final String expression, final long... bounds) {
+		if (bounds.length < 2) {
+			throw new IllegalArgumentException("At least two bounds required");
+		}
+		final PartitionedQuery result = new PartitionedQuery(
+				new ArrayList<QueryBuilder>(bounds.length - 1));
+		for (int i = 1; i < bounds.length; i++) {
+			if (bounds[i - 1] >= bounds[i]) {
+				throw new IllegalArgumentException(
+						"Bounds must be strictly ascending");
+			}
+			final QueryBuilder query = partition(builder);
+			final String lower = query.generateParameterName();
+			final String upper = query.generateParameterName();
+			query.where.add(expression + " >= :" + lower).add(
+					expression + " < :" + upper);
+			query.setParameter(lower, bounds[i - 1]).setParameter(upper,
+					bounds[i]);
+			result.queries.add(query);
+		}
+		return result;
+	}
+
+	private static QueryBuilder partition(final QueryBuilder builder) {
+		if (builder == null) {
+			throw new NullPointerException("Query builder required");
+		}
+		try {
+			return (QueryBuilder) builder.clone();
+		} catch (CloneNotSupportedException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Returns the number of partitions.
+	 * 
+	 * @return number of partitions
+	 */
+	public int getPartitionCount() {
+		return queries.size();
+	}
+
+	/**
+	 * Returns the query of given partition.
+	 * 
+	 * @param partition
+	 *            partition index
+	 * @return partition query, do not change
+	 */
+	public QueryBuilder getPartitionQuery(final int partition) {
+		return queries.get(partition);
+	}
+
+	/**
+	 * Executes all partition queries in parallel and returns their
+	 * concatenated results in partition order.
+	 * 
+	 * @param managers
+	 *            supplies one EntityManager per partition, called on the
+	 *            executing thread
+	 * @param executor
+	 *            executes the partition queries
+	 * @param type
+	 *            the type of the query result
+	 * @return results of all partitions
+	 */
+	public <T> List<T> getResultList(final Supplier<EntityManager> managers,
+			final ExecutorService executor, final Class<T> type) {
+		final List<List<T>> partitions = new ArrayList<List<T>>(
+				Collections.<List<T>> nCopies(queries.size(), null));
+		final List<Future<List<T>>> futures = submit(managers, executor, type,
+				null);
+		int size = 0;
+		for (int i = 0; i < futures.size(); i++) {
+			partitions.set(i, await(futures.get(i), futures));
+			size += partitions.get(i).size();
+		}
+
+		final List<T> result = new ArrayList<T>(size);
+		for (List<T> partition : partitions) {
+			result.addAll(partition);
+		}
+		return result;
+	}
+
+	/**
+	 * Executes all partition queries in parallel and passes the results of
+	 * each partition to given consumer as soon as they arrive. The consumer
+	 * is called on the calling thread, one partition at a time.
+	 * 
+	 * @param managers
+	 *            supplies one EntityManager per partition, called on the
+	 *            executing thread
+	 * @param executor
+	 *            executes the partition queries
+	 * @param type
+	 *            the type of the query result
+	 * @param consumer
+	 *            receives the results of each partition
+	 */
+	public <T> void forEachPartition(final Supplier<EntityManager> managers,
+			final ExecutorService executor, final Class<T> type,
+			final Consumer<? super List<T>> consumer) {
+		final CompletionService<List<T>> completion = new ExecutorCompletionService<List<T>>(
+				executor);
+		final List<Future<List<T>>> futures = submit(managers, executor, type,
+				completion);
+		for (int i = 0; i < futures.size(); i++) {
+			final Future<List<T>> future;
+			try {
+				future = completion.take();
+			} catch (InterruptedException e) {
+				cancel(futures);
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted", e);
+			}
+			consumer.accept(await(future, futures));
+		}
+	}
+
+	private <T> List<Future<List<T>>> submit(
+			final Supplier<EntityManager> managers,
+			final ExecutorService executor, final Class<T> type,
+			final CompletionService<List<T>> completion) {
+		final List<Future<List<T>>> futures = new ArrayList<Future<List<T>>>(
+				queries.size());
+		for (final QueryBuilder query : queries) {
+			final Callable<List<T>> task = new Callable<List<T>>() {
+				@Override
+				public List<T> call() {
+					final EntityManager manager = managers.get();
+					try {
+						return query.createQuery(manager, type)
+								.getResultList();
+					} finally {
+						manager.close();
+					}
+				}
+			};
+			futures.add(completion == null ? executor.submit(task)
+					: completion.submit(task));
+		}
+		return futures;
+	}
+
+	/**
+	 * Waits for given future, cancels all futures on failure.
+	 */
+	private static <T> List<T> await(final Future<List<T>> future,
+			final List<Future<List<T>>> futures) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			cancel(futures);
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted", e);
+		} catch (ExecutionException e) {
+			cancel(futures);
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	private static <T> void cancel(final List<Future<List<T>>> futures) {
+		for (Future<List<T>> future : futures) {
+			future.cancel(true);
+		}
+	}
+
+}
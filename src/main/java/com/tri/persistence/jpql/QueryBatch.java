@@ -0,0 +1,227 @@
+package com.tri.persistence.jpql;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+
+/**
+ * <p>
+ * Executes several queries with one EntityManager. Each builder is rendered
+ * once, builders rendering the same query with the same parameters are
+ * executed once.
+ * </p>
+ * 
+ * <pre>
+ * QueryBatch batch = new QueryBatch();
+ * batch.add(new QueryBuilder().select.add("COUNT(e)").from.add("Entity e"));
+ * batch.add(new QueryBuilder().select.add("MAX(e.created)").from
+ * 		.add("Entity e"));
+ * List&lt;Object&gt; results = batch.getSingleResults(entityManager);
+ * </pre>
+ * <p>
+ * Aggregate queries, i.e. queries selecting a single {@code COUNT},
+ * {@code SUM}, {@code AVG}, {@code MIN} or {@code MAX} expression without
+ * Group By and Order By Clause, differing in their Select Clause only and
+ * having equal parameters are folded into one query selecting all their
+ * expressions. The example above executes
+ * {@code SELECT COUNT(e), MAX(e.created) FROM Entity e}.
+ * </p>
+ * <p>
+ * Builders are rendered when added, later changes are not reflected.
+ * </p>
+ */
+public class QueryBatch {
+
+	private static final Pattern AGGREGATE = Pattern.compile(
+			"(?i)(COUNT|SUM|AVG|MIN|MAX)\\s*\\(.*\\)");
+
+	private static final String SELECT = "SELECT ";
+
+	/** distinct queries in order of first appearance */
+	private final Map<Object, Entry> entries = new LinkedHashMap<Object, Entry>();
+
+	/** entry per added builder */
+	private final List<Entry> queries = new ArrayList<Entry>();
+
+	private static class Entry {
+
+		final String query;
+
+		final List<Parameter<?>> parameters;
+
+		/** select expression or null if not foldable */
+		final String aggregate;
+
+		/** query without Select Clause, null if not foldable */
+		final String rest;
+
+		Entry(final String query, final List<Parameter<?>> parameters,
+				final String aggregate) {
+			this.query = query;
+			this.parameters = parameters;
+			this.aggregate = aggregate;
+			this.rest = aggregate == null ? null : query.substring(SELECT
+					.length() + aggregate.length());
+		}
+
+	}
+
+	/**
+	 * Adds given builder to the batch.
+	 * 
+	 * @param builder
+	 *            query to execute
+	 * @return index of the query's result
+	 */
+	public int add(final QueryBuilder builder) {
+		if (builder == null) {
+			throw new NullPointerException("Query builder required");
+		}
+		final String query = builder.render();
+		final List<Parameter<?>> parameters = new ArrayList<Parameter<?>>(
+				builder.getParameters());
+		final Object key = Arrays.asList(query, keys(parameters));
+
+		Entry entry = entries.get(key);
+		if (entry == null) {
+			entry = new Entry(query, parameters, aggregate(builder));
+			entries.put(key, entry);
+		}
+		queries.add(entry);
+		return queries.size() - 1;
+	}
+
+	/**
+	 * Returns the number of queries added.
+	 * 
+	 * @return number of queries
+	 */
+	public int size() {
+		return queries.size();
+	}
+
+	/**
+	 * Returns the number of distinct queries, i.e. the number of queries
+	 * executed by {@link #getResultLists(EntityManager)}.
+	 * 
+	 * @return number of distinct queries
+	 */
+	public int getDistinctCount() {
+		return entries.size();
+	}
+
+	/**
+	 * Executes all single result queries, folding aggregate queries where
+	 * possible.
+	 * 
+	 * @param manager
+	 *            JPA EntityManager
+	 * @return one result per added builder in order of addition
+	 */
+	public List<Object> getSingleResults(final EntityManager manager) {
+		// group foldable entries by query rest and parameters
+		final Map<Object, List<Entry>> groups = new LinkedHashMap<Object, List<Entry>>();
+		for (Entry entry : entries.values()) {
+			final Object key = entry.rest == null ? entry : Arrays.asList(
+					entry.rest, keys(entry.parameters));
+			List<Entry> group = groups.get(key);
+			if (group == null) {
+				group = new ArrayList<Entry>(1);
+				groups.put(key, group);
+			}
+			group.add(entry);
+		}
+
+		final Map<Entry, Object> results = new LinkedHashMap<Entry, Object>();
+		for (List<Entry> group : groups.values()) {
+			final Entry first = group.get(0);
+			if (group.size() == 1) {
+				results.put(first, bind(manager, first.query, first.parameters)
+						.getSingleResult());
+				continue;
+			}
+			final StringBuilder query = new StringBuilder(SELECT);
+			for (int i = 0; i < group.size(); i++) {
+				if (i > 0) {
+					query.append(", ");
+				}
+				query.append(group.get(i).aggregate);
+			}
+			query.append(first.rest);
+			final Object[] row = (Object[]) bind(manager, query.toString(),
+					first.parameters).getSingleResult();
+			for (int i = 0; i < group.size(); i++) {
+				results.put(group.get(i), row[i]);
+			}
+		}
+
+		final List<Object> result = new ArrayList<Object>(queries.size());
+		for (Entry entry : queries) {
+			result.add(results.get(entry));
+		}
+		return result;
+	}
+
+	/**
+	 * Executes all distinct queries.
+	 * 
+	 * @param manager
+	 *            JPA EntityManager
+	 * @return one result list per added builder in order of addition
+	 */
+	public List<List<?>> getResultLists(final EntityManager manager) {
+		final Map<Entry, List<?>> results = new LinkedHashMap<Entry, List<?>>();
+		for (Entry entry : entries.values()) {
+			results.put(entry, bind(manager, entry.query, entry.parameters)
+					.getResultList());
+		}
+
+		final List<List<?>> result = new ArrayList<List<?>>(queries.size());
+		for (Entry entry : queries) {
+			result.add(results.get(entry));
+		}
+		return result;
+	}
+
+	private static Query bind(final EntityManager manager,
+			final String query, final List<Parameter<?>> parameters) {
+		if (manager == null) {
+			throw new NullPointerException("Entity Manager required");
+		}
+		final List<Parameter<?>> referenced = ParameterReferences.filter(
+				parameters, ParameterReferences.scan(query));
+		return BindingPlan.of(referenced).bind(manager.createQuery(query),
+				BindingPlan.values(referenced));
+	}
+
+	private static Object keys(final List<Parameter<?>> parameters) {
+		final HashSet<Object> result = new HashSet<Object>();
+		for (Parameter<?> parameter : parameters) {
+			result.add(parameter.key());
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the aggregate select expression of given builder or null if the
+	 * query cannot be folded.
+	 */
+	private static String aggregate(final QueryBuilder builder) {
+		if (builder.select.items.size() != 1
+				|| builder.select.items.get(0) == null
+				|| builder.group.isEmpty() == false
+				|| builder.order.isEmpty() == false) {
+			return null;
+		}
+		final String item = builder.select.items.get(0);
+		return AGGREGATE.matcher(item).matches() ? item : null;
+	}
+
+}
@@ -1,17 +1,23 @@
 package com.tri.persistence.jpql;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 import javax.persistence.EntityManager;
 import javax.persistence.Query;
 import javax.persistence.TemporalType;
 import javax.persistence.TypedQuery;
 
-import com.tri.persistence.jpql.utils.StringUtils;
-
 /**
  * <p>
  * {@literal JPQL} query builder for building complex dynamic database queries
@@ -73,6 +79,45 @@ import com.tri.persistence.jpql.utils.StringUtils;
  */
 public class QueryBuilder implements Cloneable {
 
+	private static final String SELECT = "SELECT ";
+
+	private static final String DELETE_FROM = "DELETE FROM ";
+
+	private static final String UPDATE = "UPDATE ";
+
+	private static final String SET = " SET ";
+
+	private static final String FROM = " FROM ";
+
+	private static final String WHERE = " WHERE ";
+
+	private static final String GROUP_BY = " GROUP BY ";
+
+	private static final String ORDER_BY = " ORDER BY ";
+
+	/**
+	 * sum of the lengths of all clause keywords, no query renders all of them
+	 * so this is an upper bound for any combination of clauses
+	 */
+	private static final int KEYWORDS_LENGTH = SELECT.length()
+			+ DELETE_FROM.length() + UPDATE.length() + SET.length()
+			+ FROM.length() + WHERE.length() + GROUP_BY.length()
+			+ ORDER_BY.length();
+
+	/** prefix of generated parameter names */
+	private static final String PARAMETER_PREFIX = "p_";
+
+	/** Select Clause item prefix of distinct queries */
+	private static final String DISTINCT = "DISTINCT ";
+
+	private static final String NEW = "NEW ";
+
+	/** Hibernate query hint setting the JDBC fetch size */
+	public static final String HINT_FETCH_SIZE_HIBERNATE = "org.hibernate.fetchSize";
+
+	/** EclipseLink query hint setting the JDBC fetch size */
+	public static final String HINT_FETCH_SIZE_ECLIPSELINK = "eclipselink.jdbc.fetch-size";
+
 	public SelectQueryClause select;
 
 	public StatementItem update;
@@ -91,8 +136,36 @@ public class QueryBuilder implements Cloneable {
 
 	private List<Parameter<?>> parameters;
 
+	/** index of each parameter name or position, null if to be rebuilt */
+	private Map<Object, Integer> parameterIndex;
+
 	private QueryBuilder parent;
 
+	/** sub-query item owning this builder, null for top level builders */
+	private WhereSubquery owner;
+
+	/** true if parameters are shared with a clone, copy on change */
+	private volatile boolean parametersShared;
+
+	private RenderCache renderCache;
+
+	private QueryMetricsListener metricsListener = QueryMetricsListener.NONE;
+
+	/** resolved parameter layout, null if parameters changed since */
+	private BindingPlan bindingPlan;
+
+	private Object[] bindingValues;
+
+	/** query the binding plan was resolved for */
+	private String bindingQuery;
+
+	/** parameter references of the last scanned query without render cache */
+	private Set<Object> references;
+
+	private String referencesQuery;
+
+	private int parameterSequence;
+
 	/**
 	 * Constructor
 	 */
@@ -108,38 +181,58 @@ public class QueryBuilder implements Cloneable {
 		parameters = new ArrayList<Parameter<?>>();
 	}
 
+	/**
+	 * <p>
+	 * Returns a copy of this builder. The copy shares clauses, where items
+	 * and parameters with this builder, cloning takes constant time. Shared
+	 * content is copied on the first change of either builder, only along the
+	 * path of the change.
+	 * </p>
+	 * <p>
+	 * Where items previously returned by this builder, e.g. by
+	 * {@link WhereItems#or()}, stay associated with this builder, changing
+	 * them does not affect the copy.
+	 * </p>
+	 */
 	@Override
 	public Object clone() throws CloneNotSupportedException {
+		final boolean measured = metricsListener.isEnabled();
+		final long start = measured ? System.nanoTime() : 0;
 		final QueryBuilder clone = (QueryBuilder) super.clone();
 		// TODO: Evaluate: Implement: null-out parent
+		clone.owner = null;
 
-		// deep copy
+		// copy on write
 		clone.select = (SelectQueryClause) select.clone();
-		clone.select.setBuilder(this);
+		clone.select.setBuilder(clone);
 
 		clone.update = (StatementItem) update.clone();
-		clone.update.setBuilder(this);
+		clone.update.setBuilder(clone);
 
 		clone.deleteFrom = (StatementItem) deleteFrom.clone();
-		clone.deleteFrom.setBuilder(this);
+		clone.deleteFrom.setBuilder(clone);
 
 		clone.set = (QueryClause) set.clone();
-		clone.set.setBuilder(this);
+		clone.set.setBuilder(clone);
 
 		clone.from = (QueryClause) from.clone();
-		clone.from.setBuilder(this);
+		clone.from.setBuilder(clone);
 
-		clone.where = (WhereAnd) where.clone();
-		clone.where.setBuilder(this);
+		clone.where = (WhereAnd) where.snapshot();
+		clone.where.builder = clone;
 
 		clone.order = (QueryClause) order.clone();
-		clone.order.setBuilder(this);
+		clone.order.setBuilder(clone);
 
 		clone.group = (QueryClause) group.clone();
-		clone.group.setBuilder(this);
+		clone.group.setBuilder(clone);
 
-		clone.parameters = new ArrayList<Parameter<?>>(parameters);
+		clone.parametersShared = true;
+		parametersShared = true;
 
+		if (measured) {
+			metricsListener.cloned(System.nanoTime() - start);
+		}
 		return clone;
 	}
 
@@ -147,6 +240,73 @@ public class QueryBuilder implements Cloneable {
 		this.parent = parent;
 	}
 
+	void setOwner(final WhereSubquery owner) {
+		this.owner = owner;
+	}
+
+	/**
+	 * Prepares this builder for a change of its clauses or where items, see
+	 * {@link WhereItem#beforeChange()}.
+	 */
+	void beforeChange() {
+		if (owner != null) {
+			owner.beforeChange();
+		}
+	}
+
+	/**
+	 * Propagates a change of this builder to the owning sub-query item, which
+	 * updates the fingerprints and drops the rendered fragments up to the top
+	 * level builder, see {@link WhereItem#afterChange(long)}.
+	 */
+	void afterChange() {
+		if (owner != null) {
+			owner.queryChanged();
+		}
+	}
+
+	/**
+	 * <p>
+	 * Returns a 64 bit fingerprint of the structure of this builder, i.e. its
+	 * clauses, its where tree and its sub-queries in order. Parameter values,
+	 * literal values of In Expressions and names of generated parameters are
+	 * ignored, so builders differing in values only share the fingerprint.
+	 * </p>
+	 * <p>
+	 * The fingerprint is maintained while clauses and where items are added,
+	 * this call takes constant time. Being a hash it identifies shapes for
+	 * metrics and lookups, equal fingerprints do not guarantee equal queries.
+	 * </p>
+	 * 
+	 * @return structural fingerprint
+	 */
+	public long fingerprint() {
+		long result = Fingerprints.append(0, select.fingerprint);
+		result = Fingerprints.append(result, update.fingerprint);
+		result = Fingerprints.append(result, deleteFrom.fingerprint);
+		result = Fingerprints.append(result, set.fingerprint);
+		result = Fingerprints.append(result, from.fingerprint);
+		result = Fingerprints.append(result, where.fingerprint());
+		result = Fingerprints.append(result, group.fingerprint);
+		return Fingerprints.append(result, order.fingerprint);
+	}
+
+	/**
+	 * Returns the estimated length of the rendered query, i.e. the lengths of
+	 * the clauses and the where tree maintained while items are added, used
+	 * to allocate the render buffer once. The estimate is exact for textual
+	 * items and In Expressions, operators are counted as {@code " AND "} and
+	 * the clause keywords with the lengths of all keywords, so both are
+	 * overestimated.
+	 * 
+	 * @return estimated number of characters
+	 */
+	int length() {
+		return KEYWORDS_LENGTH + select.length + update.length
+				+ deleteFrom.length + set.length + from.length
+				+ where.length() + group.length + order.length;
+	}
+
 	/**
 	 * Returns the parent builder.
 	 * 
@@ -157,7 +317,55 @@ public class QueryBuilder implements Cloneable {
 	}
 
 	/**
-	 * Returns a JPA Query with all previously specified parameters added.
+	 * Assigns a cache for rendered queries. Clones of this builder share the
+	 * cache. If set, {@link #render()} skips rendering for builders whose
+	 * structure has been rendered before.
+	 * 
+	 * @param renderCache
+	 *            cache to use or null to disable caching
+	 * @return builder reference, fluent api support
+	 */
+	public QueryBuilder setRenderCache(final RenderCache renderCache) {
+		this.renderCache = renderCache;
+		return this;
+	}
+
+	/**
+	 * Returns the cache used for rendered queries.
+	 * 
+	 * @return the render cache or null if there is none
+	 */
+	public RenderCache getRenderCache() {
+		return renderCache;
+	}
+
+	/**
+	 * Sets the listener receiving timings and sizes of rendering, cloning and
+	 * query creation. Clones inherit the listener.
+	 * 
+	 * @param metricsListener
+	 *            listener or null to disable measurements
+	 * @return builder reference, fluent api support
+	 */
+	public QueryBuilder setMetricsListener(
+			final QueryMetricsListener metricsListener) {
+		this.metricsListener = metricsListener == null ? QueryMetricsListener.NONE
+				: metricsListener;
+		return this;
+	}
+
+	/**
+	 * Returns the listener receiving timings and sizes.
+	 * 
+	 * @return listener, {@link QueryMetricsListener#NONE} if none is set
+	 */
+	public QueryMetricsListener getMetricsListener() {
+		return metricsListener;
+	}
+
+	/**
+	 * Returns a JPA Query with all previously specified parameters added that
+	 * are referenced by the query, unreferenced parameters are dropped.
 	 * 
 	 * @param manager
 	 *            JPA EntityManager
@@ -168,17 +376,17 @@ public class QueryBuilder implements Cloneable {
 			throw new NullPointerException("Entity Manager required");
 		}
 
-		final Query query = manager.createQuery(render());
-
-		for (Parameter<?> parameter : parameters) {
-			parameter.apply(query);
-		}
-
-		return query;
+		return createQuery(new Function<String, Query>() {
+			@Override
+			public Query apply(final String jpql) {
+				return manager.createQuery(jpql);
+			}
+		});
 	}
 
 	/**
-	 * Returns a JPA TypedQuery with all previously specified parameters added.
+	 * Returns a JPA TypedQuery with all previously specified parameters added
+	 * that are referenced by the query, unreferenced parameters are dropped.
 	 * 
 	 * @param manager
 	 *            JPA EntityManager
@@ -187,23 +395,175 @@ public class QueryBuilder implements Cloneable {
 	 * @return JPA Query
 	 */
 	public <T> TypedQuery<T> createQuery(final EntityManager manager,
-			Class<T> type) {
+			final Class<T> type) {
 		if (manager == null) {
 			throw new NullPointerException("Entity Manager required");
 		}
 
-		TypedQuery<T> result = manager.createQuery(render(), type);
+		return createQuery(new Function<String, TypedQuery<T>>() {
+			@Override
+			public TypedQuery<T> apply(final String jpql) {
+				return manager.createQuery(jpql, type);
+			}
+		});
+	}
 
-		for (Parameter<?> parameter : parameters) {
-			parameter.apply(result);
+	/**
+	 * Renders the query, creates it using given factory and binds the
+	 * referenced parameters.
+	 */
+	private <Q extends Query> Q createQuery(final Function<String, Q> factory) {
+		if (metricsListener.isEnabled() == false) {
+			final String jpql = render();
+			return bindingPlan(jpql).bind(factory.apply(jpql), bindingValues);
 		}
 
+		final Object context = metricsListener.queryCreationStarted();
+		final long start = System.nanoTime();
+		final RenderMetrics metrics = renderMeasured();
+		final Q query = bindingPlan(metrics.getQuery()).bind(
+				factory.apply(metrics.getQuery()), bindingValues);
+		metricsListener.queryCreated(metrics, System.nanoTime() - start,
+				bindingValues.length, context);
+		return query;
+	}
+
+	/**
+	 * Executes the query and returns its result as lazily consumed stream,
+	 * rows are fetched from the database in batches of given size. The
+	 * stream holds database resources and must be closed, use
+	 * try-with-resources:
+	 * 
+	 * <pre>
+	 * try (Stream&lt;Entity&gt; entities = builder.stream(manager, Entity.class, 500)) {
+	 * 	entities.forEach(writer::write);
+	 * }
+	 * </pre>
+	 * <p>
+	 * The fetch size is passed as {@value #HINT_FETCH_SIZE_HIBERNATE} and
+	 * {@value #HINT_FETCH_SIZE_ECLIPSELINK} hint, providers ignore hints they
+	 * do not know. Memory stays constant only if the provider overrides
+	 * {@link TypedQuery#getResultStream()}, the default implementation reads
+	 * the complete result list. Managed entities are kept by the persistence
+	 * context, clear or detach them while reading large results.
+	 * </p>
+	 * 
+	 * @param manager
+	 *            JPA EntityManager
+	 * @param type
+	 *            the type of the query result
+	 * @param fetchSize
+	 *            number of rows fetched per database round trip
+	 * @return stream of results
+	 */
+	public <T> Stream<T> stream(final EntityManager manager,
+			final Class<T> type, final int fetchSize) {
+		if (fetchSize < 1) {
+			throw new IllegalArgumentException("Fetch size must be positive");
+		}
+
+		final TypedQuery<T> query = createQuery(manager, type);
+		query.setHint(HINT_FETCH_SIZE_HIBERNATE, fetchSize);
+		query.setHint(HINT_FETCH_SIZE_ECLIPSELINK, fetchSize);
+
+		return query.getResultStream();
+	}
+
+	/**
+	 * Compiles this builder into an immutable, thread-safe template holding
+	 * the rendered query and one parameter slot per parameter set so far and
+	 * referenced by the query, like {@link #createQuery(EntityManager)}
+	 * parameters not referenced are dropped. Later changes of this builder do
+	 * not affect the template.
+	 * 
+	 * @return query template
+	 */
+	public QueryTemplate compile() {
+		final String query = render();
+		return new QueryTemplate(query, ParameterReferences.filter(parameters,
+				references(query)));
+	}
+
+	/**
+	 * Derives a count query counting the results of this query, i.e. a copy of
+	 * this builder with its single Select Clause item {@code x} replaced by
+	 * {@code COUNT(x)}, or {@code COUNT(DISTINCT x)} for {@code DISTINCT x}.
+	 * 
+	 * @return count query
+	 * @throws IllegalStateException
+	 *             if the Select Clause has not exactly one item or the item is
+	 *             a constructor expression {@code NEW ...}
+	 * @see #count(String)
+	 */
+	public QueryBuilder count() {
+		if (select.items.size() != 1) {
+			throw new IllegalStateException(
+					"Single Select Clause item required, use count(String)");
+		}
+		final String item = select.items.get(0).trim();
+		final boolean distinct = item.regionMatches(true, 0, DISTINCT, 0,
+				DISTINCT.length());
+		final String expression = distinct ? item.substring(
+				DISTINCT.length()).trim() : item;
+		if (expression.regionMatches(true, 0, NEW, 0, NEW.length())) {
+			throw new IllegalStateException(
+					"Constructor expression cannot be counted, use count(String)");
+		}
+		return distinct ? countDistinct(expression) : count(expression);
+	}
+
+	/**
+	 * <p>
+	 * Derives a count query, i.e. a copy of this builder selecting
+	 * {@code COUNT(expression)} without Order By Clause. From, Where and Group
+	 * By Clause, sub-queries, parameters and the render cache are kept, so the
+	 * count query of each shape is rendered once if a render cache is set.
+	 * </p>
+	 * <p>
+	 * With a Group By Clause the count query returns one count per group. This
+	 * builder is not changed.
+	 * </p>
+	 * 
+	 * @param expression
+	 *            expression to count, e.g. {@code e} or {@code e.id}
+	 * @return count query
+	 */
+	public QueryBuilder count(final String expression) {
+		return derive("COUNT(" + expression + ")");
+	}
+
+	/**
+	 * Derives a count query selecting {@code COUNT(DISTINCT expression)}.
+	 * 
+	 * @param expression
+	 *            expression to count, e.g. {@code e.type}
+	 * @return count query
+	 * @see #count(String)
+	 */
+	public QueryBuilder countDistinct(final String expression) {
+		return derive("COUNT(DISTINCT " + expression + ")");
+	}
+
+	private QueryBuilder derive(final String selectItem) {
+		if (parent != null) {
+			throw new IllegalStateException("Top level query builder required");
+		}
+		final QueryBuilder result;
+		try {
+			result = (QueryBuilder) clone();
+		} catch (CloneNotSupportedException e) {
+			throw new IllegalStateException(e);
+		}
+		result.select = new SelectQueryClause(result);
+		result.select.add(selectItem);
+		result.order = new QueryClause(result);
 		return result;
 	}
 
 	/**
-	 * Adds the given parameter to the builder. All parameters will added to the
-	 * JPA Query returned by a call to {@link #createQuery(EntityManager)} or
+	 * Adds the given parameter to the builder, replaces a parameter of the
+	 * same name. Parameters referenced by the query will be added to the JPA
+	 * Query returned by a call to {@link #createQuery(EntityManager)} or
 	 * {@link #createQuery(EntityManager, Class)}.
 	 * 
 	 * @param name
@@ -220,8 +580,9 @@ public class QueryBuilder implements Cloneable {
 	}
 
 	/**
-	 * Adds the given parameter to the builder. All parameters will added to the
-	 * JPA Query returned by a call to {@link #createQuery(EntityManager)} or
+	 * Adds the given parameter to the builder, replaces a parameter of the
+	 * same name. Parameters referenced by the query will be added to the JPA
+	 * Query returned by a call to {@link #createQuery(EntityManager)} or
 	 * {@link #createQuery(EntityManager, Class)}.
 	 * 
 	 * @param name
@@ -238,8 +599,9 @@ public class QueryBuilder implements Cloneable {
 	}
 
 	/**
-	 * Adds the given parameter to the builder. All parameters will added to the
-	 * JPA Query returned by a call to {@link #createQuery(EntityManager)} or
+	 * Adds the given parameter to the builder, replaces a parameter of the
+	 * same name. Parameters referenced by the query will be added to the JPA
+	 * Query returned by a call to {@link #createQuery(EntityManager)} or
 	 * {@link #createQuery(EntityManager, Class)}.
 	 * 
 	 * @param name
@@ -253,9 +615,10 @@ public class QueryBuilder implements Cloneable {
 	}
 
 	/**
-	 * Adds given parameter to the builder. All parameters will added to the JPA
-	 * Query returned by a call to {@link #createQuery(EntityManager)} or
-	 * {@link #createQuery(EntityManager, Class)}.
+	 * Adds given parameter to the builder, replaces a parameter of the same
+	 * name or position. Parameters referenced by the query will be added to
+	 * the JPA Query returned by a call to {@link #createQuery(EntityManager)}
+	 * or {@link #createQuery(EntityManager, Class)}, others are ignored.
 	 * 
 	 * @param parameter
 	 *            parameter to add
@@ -263,7 +626,8 @@ public class QueryBuilder implements Cloneable {
 	 */
 	public QueryBuilder setParameter(final Parameter<?> parameter) {
 		if (parent == null) {
-			parameters.add(parameter);
+			beforeParameterChange();
+			putParameter(parameter);
 		} else {
 			parent.setParameter(parameter);
 		}
@@ -281,7 +645,10 @@ public class QueryBuilder implements Cloneable {
 	 */
 	public QueryBuilder setParameters(final List<Parameter<?>> parameters) {
 		if (parent == null) {
-			this.parameters.addAll(parameters);
+			beforeParameterChange();
+			for (Parameter<?> parameter : parameters) {
+				putParameter(parameter);
+			}
 		} else {
 			parent.setParameters(parameters);
 		}
@@ -289,65 +656,333 @@ public class QueryBuilder implements Cloneable {
 	}
 
 	/**
-	 * Returns all previously set parameters
+	 * Generates a parameter name not used by any parameter of the top level
+	 * builder, names follow the pattern {@code p_n}. Names are generated in
+	 * sequence, builders created the same way generate the same names.
+	 * 
+	 * @return unused parameter name
+	 */
+	String generateParameterName() {
+		if (parent != null) {
+			return parent.generateParameterName();
+		}
+
+		String name;
+		do {
+			name = PARAMETER_PREFIX + (++parameterSequence);
+		} while (isParameterNameUsed(name));
+		return name;
+	}
+
+	/**
+	 * Returns true if given name follows the pattern of generated parameter
+	 * names, see {@link #generateParameterName()}.
+	 * 
+	 * @param name
+	 *            parameter name
+	 * @return {@code true} for names like {@code p_1}
+	 */
+	static boolean isGeneratedParameterName(final String name) {
+		if (name.length() <= PARAMETER_PREFIX.length()
+				|| name.startsWith(PARAMETER_PREFIX) == false) {
+			return false;
+		}
+		for (int i = PARAMETER_PREFIX.length(); i < name.length(); i++) {
+			if (Character.isDigit(name.charAt(i)) == false) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns true if a parameter of the top level builder has given name.
 	 * 
-	 * @return list of parameters
+	 * @param name
+	 *            parameter name
+	 * @return {@code true} if the name is in use
+	 */
+	boolean isParameterNameUsed(final String name) {
+		if (parent != null) {
+			return parent.isParameterNameUsed(name);
+		}
+		return parameterIndex().containsKey(name);
+	}
+
+	/**
+	 * Returns all previously set parameters. The list may be changed, changes
+	 * apply to this builder like {@link #setParameter(Parameter)} does.
+	 * 
+	 * @return live list of parameters
 	 */
 	public List<Parameter<?>> getParameters() {
-		return parameters;
+		return new ParameterList();
+	}
+
+	/**
+	 * View of {@link QueryBuilder#parameters} handed out by
+	 * {@link QueryBuilder#getParameters()}, changes drop the parameter index
+	 * and the binding plan and copy shared parameters first.
+	 */
+	private final class ParameterList extends AbstractList<Parameter<?>>
+			implements RandomAccess {
+
+		@Override
+		public Parameter<?> get(final int index) {
+			return parameters.get(index);
+		}
+
+		@Override
+		public int size() {
+			return parameters.size();
+		}
+
+		@Override
+		public Parameter<?> set(final int index, final Parameter<?> element) {
+			beforeListChange();
+			return parameters.set(index, element);
+		}
+
+		@Override
+		public void add(final int index, final Parameter<?> element) {
+			beforeListChange();
+			parameters.add(index, element);
+			modCount++;
+		}
+
+		@Override
+		public Parameter<?> remove(final int index) {
+			beforeListChange();
+			modCount++;
+			return parameters.remove(index);
+		}
+
+		private void beforeListChange() {
+			beforeParameterChange();
+			parameterIndex = null;
+		}
+
 	}
 
 	/**
-	 * Renders this object as JPQL query string.
+	 * Adds or replaces given parameter, keeps the position of a replaced one.
+	 */
+	private void putParameter(final Parameter<?> parameter) {
+		final Object key = parameter.name != null ? parameter.name
+				: parameter.position;
+		final Map<Object, Integer> index = parameterIndex();
+		final Integer existing = key == null ? null : index.get(key);
+		if (existing != null) {
+			parameters.set(existing, parameter);
+		} else {
+			if (key != null) {
+				index.put(key, parameters.size());
+			}
+			parameters.add(parameter);
+		}
+	}
+
+	private Map<Object, Integer> parameterIndex() {
+		Map<Object, Integer> result = parameterIndex;
+		if (result == null) {
+			result = new HashMap<Object, Integer>();
+			for (int i = 0; i < parameters.size(); i++) {
+				final Parameter<?> parameter = parameters.get(i);
+				final Object key = parameter.name != null ? parameter.name
+						: parameter.position;
+				if (key != null) {
+					result.put(key, i);
+				}
+			}
+			parameterIndex = result;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the binding plan of the parameters referenced by given query,
+	 * resolved once until the parameters or the query change, shared with
+	 * other builders through the render cache, see
+	 * {@link RenderCache#getBindingPlan(String, List)}. Sets
+	 * {@link #bindingValues} too.
+	 */
+	private BindingPlan bindingPlan(final String query) {
+		BindingPlan result = bindingPlan;
+		if (result == null || query.equals(bindingQuery) == false) {
+			final List<Parameter<?>> referenced = ParameterReferences.filter(
+					parameters, references(query));
+			result = renderCache != null ? renderCache.getBindingPlan(query,
+					referenced) : BindingPlan.of(referenced);
+			bindingValues = BindingPlan.values(referenced);
+			bindingQuery = query;
+			bindingPlan = result;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the parameter references of given query, scanned once per
+	 * query, see {@link RenderCache#getReferences(String)}.
+	 */
+	private Set<Object> references(final String query) {
+		if (renderCache != null) {
+			return renderCache.getReferences(query);
+		}
+		if (query.equals(referencesQuery) == false) {
+			references = ParameterReferences.scan(query);
+			referencesQuery = query;
+		}
+		return references;
+	}
+
+	/**
+	 * Prepares the parameter list for a change, drops the binding plan and
+	 * copies shared parameters.
+	 */
+	private void beforeParameterChange() {
+		bindingPlan = null;
+		bindingValues = null;
+		if (parametersShared) {
+			parameters = new ArrayList<Parameter<?>>(parameters);
+			// the index is shared as well
+			parameterIndex = null;
+			parametersShared = false;
+		}
+	}
+
+	/**
+	 * Simplifies the Where Clause, see {@link WhereItems#normalize()}.
+	 * 
+	 * @return builder reference, fluent api support
+	 */
+	public QueryBuilder normalize() {
+		where.normalize();
+		return this;
+	}
+
+	/**
+	 * Renders this object as JPQL query string. The query is taken from the
+	 * assigned {@link RenderCache} if this builder's structure has been
+	 * rendered before.
 	 * 
 	 * @return the query as string
 	 */
 	public String render() {
+		if (metricsListener.isEnabled()) {
+			return renderMeasured().getQuery();
+		}
+		if (renderCache == null) {
+			return renderQuery();
+		}
 
-		StringBuilder query = new StringBuilder();
+		final Object shape = shape();
+		String query = renderCache.get(shape);
+		if (query == null) {
+			query = renderQuery();
+			renderCache.put(shape, query);
+		}
+		return query;
+	}
+
+	private RenderMetrics renderMeasured() {
+		final Object context = metricsListener.renderStarted();
+		final long start = System.nanoTime();
+		final String query;
+		Boolean cacheHit = null;
+		if (renderCache == null) {
+			query = renderQuery();
+		} else {
+			final Object shape = shape();
+			final String cached = renderCache.get(shape);
+			cacheHit = cached != null;
+			if (cached == null) {
+				query = renderQuery();
+				renderCache.put(shape, query);
+			} else {
+				query = cached;
+			}
+		}
+		final long nanos = System.nanoTime() - start;
+		final RenderMetrics metrics = new RenderMetrics(this, query, nanos,
+				cacheHit, parameters.size());
+		metricsListener.rendered(metrics, context);
+		return metrics;
+	}
+
+	private String renderQuery() {
+		final StringBuilder query = new StringBuilder(length());
+		render(query);
+		return query.toString();
+	}
+
+	/**
+	 * Returns the structural key of this builder, i.e. its clauses, its where
+	 * tree and its sub-queries. Builders with equal shapes render equal
+	 * queries, parameters are not part of the shape.
+	 * 
+	 * @return shape of this builder
+	 * @see RenderCache
+	 */
+	Object shape() {
+		return Arrays.asList(select.shape(), update.item, deleteFrom.item,
+				set.shape(), from.shape(), where.shape(), group.shape(),
+				order.shape());
+	}
+
+	/**
+	 * Renders this object as JPQL query into given buffer. Clauses, where items
+	 * and sub-queries all append to the same buffer. Clauses, where item
+	 * groups and In Expressions keep their rendered fragments until they or an
+	 * item below change, so rendering again after a change only renders the
+	 * path of the change.
+	 * 
+	 * @param query
+	 *            buffer to append to
+	 */
+	public void render(final StringBuilder query) {
+
+		query.ensureCapacity(query.length() + length());
 
 		if (!select.isEmpty()) {
-			query.append("SELECT ");
-			query.append(StringUtils.join(select.items));
+			query.append(SELECT);
+			select.render(query);
 		}
 
 		if (!deleteFrom.isEmpty()) {
-			query.append("DELETE FROM ");
-			query.append(deleteFrom.item);
+			query.append(DELETE_FROM);
+			deleteFrom.render(query);
 		}
 
 		if (!update.isEmpty()) {
-			query.append("UPDATE ");
-			query.append(update.item);
+			query.append(UPDATE);
+			update.render(query);
 
 			if (!set.isEmpty()) {
-				query.append(" SET ");
-				query.append(StringUtils.join(set.items));
+				query.append(SET);
+				set.render(query);
 			}
 		}
 
 		if (!from.isEmpty()) {
-			query.append(" FROM ");
-			query.append(StringUtils.join(from.items));
+			query.append(FROM);
+			from.render(query);
 		}
 
 		if (!where.isEmpty()) {
-			query.append(" WHERE ");
-			query.append(where.render());
+			query.append(WHERE);
+			where.render(query);
 		}
 
 		if (!group.isEmpty()) {
-			query.append(" GROUP BY ");
-			query.append(StringUtils.join(group.items));
+			query.append(GROUP_BY);
+			group.render(query);
 		}
 
 		if (order.isEmpty() == false) {
-			query.append(" ORDER BY ");
-			query.append(StringUtils.join(order.items));
+			query.append(ORDER_BY);
+			order.render(query);
 		}
 
-		return query.toString();
-
 	}
 
 }
\ No newline at end of file
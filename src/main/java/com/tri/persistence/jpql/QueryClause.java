@@ -3,6 +3,8 @@ package com.tri.persistence.jpql;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.tri.persistence.jpql.utils.StringUtils;
+
 /**
  * Internal string list to hold {@literal SQL} Statement Clause items, i.e.
  * {@code FROM} or {@code ORDER} parameters like {@code field=content}. Notice,
@@ -15,6 +17,18 @@ public class QueryClause implements Cloneable {
 
 	QueryBuilder builder;
 
+	/** true if items are shared with a clone, copy on change */
+	volatile boolean shared;
+
+	/** fingerprint of the items, see {@link QueryBuilder#fingerprint()} */
+	long fingerprint;
+
+	/** length of the rendered items */
+	int length;
+
+	/** rendered items, null if not rendered since the last change */
+	private volatile String rendered;
+
 	/**
 	 * Constructor
 	 * 
@@ -28,8 +42,9 @@ public class QueryClause implements Cloneable {
 	public Object clone() throws CloneNotSupportedException {
 		final QueryClause clone = (QueryClause) super.clone();
 		// TODO: Evaluate: Implement: null-out builder
-		// deep copy
-		clone.items = new ArrayList<String>(items);
+		// copy on write
+		clone.shared = true;
+		shared = true;
 		return clone;
 	}
 
@@ -45,12 +60,62 @@ public class QueryClause implements Cloneable {
 	 * @return the query builder
 	 */
 	public QueryBuilder add(final String item) {
-		items.add(item);
+		addItem(item);
 		return builder;
 	}
 
+	/**
+	 * Adds an item, copies shared items first.
+	 * 
+	 * @param item
+	 *            clause item
+	 */
+	void addItem(final String item) {
+		if (builder != null) {
+			builder.beforeChange();
+		}
+		if (shared) {
+			items = new ArrayList<String>(items);
+			shared = false;
+		}
+		items.add(item);
+		rendered = null;
+		length += (items.size() > 1 ? 2 : 0) + StringUtils.length(item);
+		fingerprint = Fingerprints.append(fingerprint, Fingerprints.of(item));
+		if (builder != null) {
+			builder.afterChange();
+		}
+	}
+
 	public boolean isEmpty() {
 		return items.isEmpty();
 	}
 
+	/**
+	 * Returns the structural key of this clause, i.e. a snapshot of its items.
+	 * 
+	 * @return shape of this clause
+	 */
+	Object shape() {
+		return new ArrayList<String>(items);
+	}
+
+	/**
+	 * Renders the clause items separated by comma into given buffer. The
+	 * fragment is kept until the next item is added.
+	 * 
+	 * @param result
+	 *            buffer to append to
+	 */
+	public void render(final StringBuilder result) {
+		final String fragment = rendered;
+		if (fragment != null) {
+			result.append(fragment);
+			return;
+		}
+		final int begin = result.length();
+		StringUtils.join(items, result);
+		rendered = result.substring(begin);
+	}
+
 }
@@ -0,0 +1,132 @@
+package com.tri.persistence.jpql;
+
+/**
+ * <p>
+ * Receives timings and size figures of {@link QueryBuilder} operations, e.g.
+ * to export them to a metrics registry. Install a listener with
+ * {@link QueryBuilder#setMetricsListener(QueryMetricsListener)}, clones
+ * inherit it. Without a listener the builder skips all measurements.
+ * </p>
+ * 
+ * <pre>
+ * builder.setMetricsListener(new QueryMetricsListener() {
+ * 	&#064;Override
+ * 	public void rendered(final RenderMetrics metrics, final Object context) {
+ * 		registry.timer(&quot;jpql.render&quot;).record(metrics.getNanos(),
+ * 				TimeUnit.NANOSECONDS);
+ * 		registry.summary(&quot;jpql.length&quot;).record(metrics.getLength());
+ * 	}
+ * });
+ * </pre>
+ * <p>
+ * Methods are called on the thread using the builder, implementations shared
+ * by several builders must be thread-safe. All methods do nothing by default.
+ * Listeners measuring the operations themselves, e.g. as events, start them
+ * in {@link #renderStarted()} and {@link #queryCreationStarted()} and
+ * receive the returned context on completion.
+ * </p>
+ */
+public interface QueryMetricsListener {
+
+	/** listener doing nothing, the default */
+	QueryMetricsListener NONE = new QueryMetricsListener() {
+		@Override
+		public boolean isEnabled() {
+			return false;
+		}
+	};
+
+	/**
+	 * Returns the listener emitting JDK Flight Recorder events
+	 * {@code com.tri.persistence.jpql.Render} and
+	 * {@code com.tri.persistence.jpql.CreateQuery}, see
+	 * {@code JfrQueryMetricsListener}. The listener is compiled for Java 11
+	 * and loaded reflectively, runtimes without the {@code jdk.jfr} module,
+	 * e.g. Java 8, get {@link #NONE}.
+	 * 
+	 * @return flight recorder listener or {@link #NONE}
+	 */
+	static QueryMetricsListener jfr() {
+		try {
+			return (QueryMetricsListener) Class
+					.forName("com.tri.persistence.jpql.JfrQueryMetricsListener")
+					.getField("INSTANCE").get(null);
+		} catch (ReflectiveOperationException | LinkageError e) {
+			return NONE;
+		}
+	}
+
+	/**
+	 * Returns true if the builder is to measure and report, checked before
+	 * each measured operation. Listeners that can be switched off, e.g. by a
+	 * recording setting, return false while off so nothing is measured.
+	 * 
+	 * @return {@code true} by default
+	 */
+	default boolean isEnabled() {
+		return true;
+	}
+
+	/**
+	 * Called before a measured {@link QueryBuilder#render()}. The returned
+	 * context, e.g. an event whose duration is to cover the rendering, is
+	 * passed to {@link #rendered(RenderMetrics, Object)}.
+	 * 
+	 * @return context, {@code null} by default
+	 */
+	default Object renderStarted() {
+		return null;
+	}
+
+	/**
+	 * Called after {@link QueryBuilder#render()}.
+	 * 
+	 * @param metrics
+	 *            figures of the rendered query
+	 * @param context
+	 *            context returned by {@link #renderStarted()}
+	 */
+	default void rendered(final RenderMetrics metrics, final Object context) {
+	}
+
+	/**
+	 * Called after {@link QueryBuilder#clone()}.
+	 * 
+	 * @param nanos
+	 *            time taken in nanoseconds
+	 */
+	default void cloned(final long nanos) {
+	}
+
+	/**
+	 * Called before a measured
+	 * {@link QueryBuilder#createQuery(javax.persistence.EntityManager)} and its
+	 * overloads, the returned context is passed to
+	 * {@link #queryCreated(RenderMetrics, long, int, Object)}.
+	 * 
+	 * @return context, {@code null} by default
+	 */
+	default Object queryCreationStarted() {
+		return null;
+	}
+
+	/**
+	 * Called after {@link QueryBuilder#createQuery(javax.persistence.EntityManager)}
+	 * and its overloads, the time includes rendering, query creation by the
+	 * {@literal JPA} provider and parameter binding.
+	 * 
+	 * @param metrics
+	 *            figures of the rendered query, passed to
+	 *            {@link #rendered(RenderMetrics, Object)} before
+	 * @param nanos
+	 *            time taken in nanoseconds
+	 * @param parameterCount
+	 *            number of parameters bound
+	 * @param context
+	 *            context returned by {@link #queryCreationStarted()}
+	 */
+	default void queryCreated(final RenderMetrics metrics, final long nanos,
+			final int parameterCount, final Object context) {
+	}
+
+}
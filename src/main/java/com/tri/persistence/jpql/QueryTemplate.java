@@ -0,0 +1,183 @@
+package com.tri.persistence.jpql;
+
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import javax.persistence.TypedQuery;
+
+/**
+ * <p>
+ * Precompiled query, created by {@link QueryBuilder#compile()}. A template
+ * holds the rendered {@literal JPQL} query and an ordered table of parameter
+ * slots, one slot per parameter set on the builder at compile time and
+ * referenced by the query. Queries are created without rendering, values are
+ * bound to the slots in order.
+ * </p>
+ * 
+ * <pre>
+ * static final QueryTemplate BY_NAME = new QueryBuilder().select.add("e").from
+ * 		.add("Entity e").where.add("e.name=:name").builder()
+ * 		.setParameter("name", null).compile();
+ * ...
+ * BY_NAME.createQuery(entityManager, Entity.class, "xyz").getResultList();
+ * </pre>
+ * <p>
+ * {@code QueryTemplate} objects are immutable and thread-safe, provided the
+ * parameter values set at compile time are not changed.
+ * </p>
+ */
+public class QueryTemplate {
+
+	private final String query;
+
+	private final BindingPlan plan;
+
+	private final Object[] values;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param query
+	 *            rendered {@literal JPQL} query
+	 * @param parameters
+	 *            parameters defining the slots and their default values
+	 */
+	QueryTemplate(final String query, final List<Parameter<?>> parameters) {
+		this(query, BindingPlan.of(parameters), BindingPlan.values(parameters));
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param query
+	 *            rendered {@literal JPQL} query
+	 * @param plan
+	 *            parameter slots
+	 * @param values
+	 *            default values, one per slot, not changed later
+	 */
+	QueryTemplate(final String query, final BindingPlan plan,
+			final Object[] values) {
+		this.query = query;
+		this.plan = plan;
+		this.values = values;
+	}
+
+	/**
+	 * Returns the rendered query.
+	 * 
+	 * @return {@literal JPQL} query
+	 */
+	public String getQuery() {
+		return query;
+	}
+
+	/**
+	 * Returns the number of parameter slots.
+	 * 
+	 * @return number of slots
+	 */
+	public int getParameterCount() {
+		return plan.size();
+	}
+
+	/**
+	 * Returns the slot index of the named parameter.
+	 * 
+	 * @param name
+	 *            parameter name
+	 * @return slot index or -1 if there is no such parameter
+	 */
+	public int indexOf(final String name) {
+		return plan.indexOf(name);
+	}
+
+	/**
+	 * Returns a JPA Query with the parameter values set at compile time.
+	 * 
+	 * @param manager
+	 *            JPA EntityManager
+	 * @return JPA Query
+	 */
+	public Query createQuery(final EntityManager manager) {
+		return createQuery(manager, values);
+	}
+
+	/**
+	 * Returns a JPA Query with given parameter values bound.
+	 * 
+	 * @param manager
+	 *            JPA EntityManager
+	 * @param values
+	 *            one value per slot, in slot order
+	 * @return JPA Query
+	 */
+	public Query createQuery(final EntityManager manager,
+			final Object... values) {
+		if (manager == null) {
+			throw new NullPointerException("Entity Manager required");
+		}
+		return bind(manager.createQuery(query), values);
+	}
+
+	/**
+	 * Returns a JPA TypedQuery with the parameter values set at compile time.
+	 * 
+	 * @param manager
+	 *            JPA EntityManager
+	 * @param type
+	 *            the type of the query result
+	 * @return JPA TypedQuery
+	 */
+	public <T> TypedQuery<T> createQuery(final EntityManager manager,
+			final Class<T> type) {
+		return createQuery(manager, type, values);
+	}
+
+	/**
+	 * Returns a JPA TypedQuery with given parameter values bound.
+	 * 
+	 * @param manager
+	 *            JPA EntityManager
+	 * @param type
+	 *            the type of the query result
+	 * @param values
+	 *            one value per slot, in slot order
+	 * @return JPA TypedQuery
+	 */
+	public <T> TypedQuery<T> createQuery(final EntityManager manager,
+			final Class<T> type, final Object... values) {
+		if (manager == null) {
+			throw new NullPointerException("Entity Manager required");
+		}
+		return bind(manager.createQuery(query, type), values);
+	}
+
+	/**
+	 * Binds the parameter values set at compile time to given query, e.g. a
+	 * named query created from this template.
+	 * 
+	 * @param query
+	 *            JPA Query created from this template's query
+	 * @return the given query
+	 */
+	public <Q extends Query> Q bind(final Q query) {
+		return bind(query, values);
+	}
+
+	/**
+	 * Binds given parameter values to given query, e.g. a named query created
+	 * from this template.
+	 * 
+	 * @param query
+	 *            JPA Query created from this template's query
+	 * @param values
+	 *            one value per slot, in slot order
+	 * @return the given query
+	 */
+	public <Q extends Query> Q bind(final Q query, final Object... values) {
+		return plan.bind(query, values);
+	}
+
+}
\ No newline at end of file
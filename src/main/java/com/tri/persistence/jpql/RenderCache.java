@@ -0,0 +1,218 @@
+package com.tri.persistence.jpql;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>
+ * Bounded cache of rendered {@literal JPQL} queries, keyed by the structure
+ * (shape) of a {@link QueryBuilder}. Builders producing the same clauses, the
+ * same {@code AND}/{@code OR} tree and the same sub-queries share one cache
+ * entry, rendering is skipped for them after the first time. Least recently
+ * used entries are evicted once the capacity is exceeded. The parameter
+ * references and the binding plan of each rendered query are cached the same
+ * way.
+ * </p>
+ * <p>
+ * A {@code RenderCache} is thread-safe and is meant to be shared by many
+ * builders, e.g. by assigning it to a base builder whose clones inherit it:
+ * </p>
+ * 
+ * <pre>
+ * static final RenderCache CACHE = new RenderCache(500);
+ * ...
+ * QueryBuilder builder = new QueryBuilder().setRenderCache(CACHE);
+ * </pre>
+ * 
+ * @see QueryBuilder#setRenderCache(RenderCache)
+ */
+public class RenderCache {
+
+	private final int capacity;
+
+	private final Map<Object, String> entries;
+
+	private final Map<String, Set<Object>> references;
+
+	private final Map<String, BindingPlan> plans;
+
+	private long hits;
+
+	private long misses;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param capacity
+	 *            maximum number of cached queries
+	 */
+	public RenderCache(final int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Positive capacity required");
+		}
+		this.capacity = capacity;
+		this.entries = new LinkedHashMap<Object, String>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(
+					final Map.Entry<Object, String> eldest) {
+				return size() > RenderCache.this.capacity;
+			}
+
+		};
+		this.references = new LinkedHashMap<String, Set<Object>>(16, 0.75f,
+				true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(
+					final Map.Entry<String, Set<Object>> eldest) {
+				return size() > RenderCache.this.capacity;
+			}
+
+		};
+		this.plans = new LinkedHashMap<String, BindingPlan>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(
+					final Map.Entry<String, BindingPlan> eldest) {
+				return size() > RenderCache.this.capacity;
+			}
+
+		};
+	}
+
+	/**
+	 * Returns the query rendered for given shape and counts the lookup as hit
+	 * or miss.
+	 * 
+	 * @param shape
+	 *            structural key of a query
+	 * @return the rendered query or null if not cached
+	 */
+	synchronized String get(final Object shape) {
+		final String query = entries.get(shape);
+		if (query != null) {
+			hits++;
+		} else {
+			misses++;
+		}
+		return query;
+	}
+
+	/**
+	 * Caches the query rendered for given shape.
+	 * 
+	 * @param shape
+	 *            structural key of a query
+	 * @param query
+	 *            the rendered query
+	 */
+	synchronized void put(final Object shape, final String query) {
+		entries.put(shape, query);
+	}
+
+	/**
+	 * Returns the parameter names and positions referenced by given query,
+	 * scanning the query on the first call only.
+	 * 
+	 * @param query
+	 *            rendered query
+	 * @return referenced names and positions
+	 * @see ParameterReferences#scan(CharSequence)
+	 */
+	Set<Object> getReferences(final String query) {
+		Set<Object> result;
+		synchronized (this) {
+			result = references.get(query);
+		}
+		if (result == null) {
+			result = ParameterReferences.scan(query);
+			synchronized (this) {
+				references.put(query, result);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the binding plan of given referenced parameters of given query.
+	 * The plan is resolved once per query and reused by all builders binding
+	 * the same parameter layout, it is resolved again if the layout differs.
+	 * 
+	 * @param query
+	 *            rendered query
+	 * @param parameters
+	 *            parameters referenced by the query
+	 * @return binding plan
+	 */
+	BindingPlan getBindingPlan(final String query,
+			final List<Parameter<?>> parameters) {
+		BindingPlan result;
+		synchronized (this) {
+			result = plans.get(query);
+		}
+		if (result == null || result.matches(parameters) == false) {
+			result = BindingPlan.of(parameters);
+			synchronized (this) {
+				plans.put(query, result);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the maximum number of cached queries.
+	 * 
+	 * @return the capacity
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Returns the number of currently cached queries.
+	 * 
+	 * @return the number of cached queries
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Returns the number of lookups answered from the cache.
+	 * 
+	 * @return the number of cache hits
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Returns the number of lookups that required rendering.
+	 * 
+	 * @return the number of cache misses
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Removes all cached queries and resets the hit and miss counters.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		references.clear();
+		plans.clear();
+		hits = 0;
+		misses = 0;
+	}
+
+}
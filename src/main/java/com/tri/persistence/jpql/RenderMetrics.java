@@ -0,0 +1,157 @@
+package com.tri.persistence.jpql;
+
+/**
+ * Figures of a query rendered by {@link QueryBuilder#render()}, see
+ * {@link QueryMetricsListener}. The where tree figures include sub-queries.
+ * {@code RenderMetrics} objects are effectively immutable.
+ */
+public class RenderMetrics {
+
+	private final String query;
+
+	private final long nanos;
+
+	private final Boolean cacheHit;
+
+	private final int parameterCount;
+
+	private int whereDepth;
+
+	private int whereNodeCount;
+
+	private int inCount;
+
+	private int inValueCount;
+
+	private int maxInSize;
+
+	private final long fingerprint;
+
+	RenderMetrics(final QueryBuilder builder, final String query,
+			final long nanos, final Boolean cacheHit, final int parameterCount) {
+		this.query = query;
+		this.nanos = nanos;
+		this.cacheHit = cacheHit;
+		this.parameterCount = parameterCount;
+		fingerprint = builder.fingerprint();
+		collect(builder.where, 1);
+	}
+
+	private void collect(final WhereItem item, final int depth) {
+		whereNodeCount++;
+		whereDepth = Math.max(whereDepth, depth);
+		if (item instanceof WhereItems) {
+			for (WhereItem child : ((WhereItems) item).items) {
+				collect(child, depth + 1);
+			}
+		} else if (item instanceof WhereSubquery) {
+			collect(((WhereSubquery) item).getQueryBuilder().where, depth + 1);
+		} else if (item instanceof WhereIn) {
+			final int size = ((WhereIn) item).collection.size();
+			inCount++;
+			inValueCount += size;
+			maxInSize = Math.max(maxInSize, size);
+		}
+	}
+
+	/**
+	 * Returns the rendered query, e.g. to identify slow or oversized shapes.
+	 * 
+	 * @return the rendered query
+	 */
+	public String getQuery() {
+		return query;
+	}
+
+	/**
+	 * Returns the structural fingerprint of the rendering builder, equal for
+	 * queries differing in values only, see {@link QueryBuilder#fingerprint()}.
+	 * 
+	 * @return fingerprint
+	 */
+	public long getFingerprint() {
+		return fingerprint;
+	}
+
+	/**
+	 * Returns the time taken by rendering, including cache lookup.
+	 * 
+	 * @return time in nanoseconds
+	 */
+	public long getNanos() {
+		return nanos;
+	}
+
+	/**
+	 * Returns the length of the rendered query.
+	 * 
+	 * @return number of characters
+	 */
+	public int getLength() {
+		return query.length();
+	}
+
+	/**
+	 * Returns whether the query was taken from the render cache.
+	 * 
+	 * @return true for a cache hit, false for a miss, null without cache
+	 */
+	public Boolean getCacheHit() {
+		return cacheHit;
+	}
+
+	/**
+	 * Returns the number of parameters set on the builder.
+	 * 
+	 * @return number of parameters
+	 */
+	public int getParameterCount() {
+		return parameterCount;
+	}
+
+	/**
+	 * Returns the depth of the where tree, 1 for a flat Where Clause.
+	 * 
+	 * @return depth of the where tree
+	 */
+	public int getWhereDepth() {
+		return whereDepth;
+	}
+
+	/**
+	 * Returns the number of where items including the Where Clause itself.
+	 * 
+	 * @return number of where items
+	 */
+	public int getWhereNodeCount() {
+		return whereNodeCount;
+	}
+
+	/**
+	 * Returns the number of In Expressions.
+	 * 
+	 * @return number of In Expressions
+	 */
+	public int getInCount() {
+		return inCount;
+	}
+
+	/**
+	 * Returns the number of values of all In Expressions.
+	 * 
+	 * @return number of values
+	 */
+	public int getInValueCount() {
+		return inValueCount;
+	}
+
+	/**
+	 * Returns the number of values of the largest In Expression.
+	 * 
+	 * @return number of values or 0 if there are no In Expressions
+	 */
+	public int getMaxInSize() {
+		return maxInSize;
+	}
+
+}
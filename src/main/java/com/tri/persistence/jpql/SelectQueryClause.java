@@ -63,7 +63,7 @@ public class SelectQueryClause extends QueryClause {
 		itemBuilder.append(expression);
 		itemBuilder.append(")");
 
-		items.add(itemBuilder.toString());
+		addItem(itemBuilder.toString());
 
 		return builder;
 
@@ -11,6 +11,12 @@ public class StatementItem implements Cloneable {
 
 	QueryBuilder builder;
 
+	/** fingerprint of the item, see {@link QueryBuilder#fingerprint()} */
+	long fingerprint;
+
+	/** length of the item */
+	int length;
+
 	StatementItem(final QueryBuilder builder) {
 		this.builder = builder;
 	}
@@ -33,7 +39,15 @@ public class StatementItem implements Cloneable {
 	 * @return the query builder
 	 */
 	public QueryBuilder set(final String item) {
+		if (builder != null) {
+			builder.beforeChange();
+		}
 		this.item = item;
+		fingerprint = Fingerprints.of(item);
+		length = item == null ? 0 : item.length();
+		if (builder != null) {
+			builder.afterChange();
+		}
 		return builder;
 	}
 
@@ -41,4 +55,14 @@ public class StatementItem implements Cloneable {
 		return item == null;
 	}
 
+	/**
+	 * Renders the item into given buffer.
+	 * 
+	 * @param result
+	 *            buffer to append to
+	 */
+	public void render(final StringBuilder result) {
+		result.append(item);
+	}
+
 }
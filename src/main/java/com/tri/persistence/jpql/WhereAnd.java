@@ -1,7 +1,5 @@
 package com.tri.persistence.jpql;
 
-import com.tri.persistence.jpql.utils.StringUtils;
-
 /**
  * AND operator for a {@literal SQL} Where Clause.
  */
@@ -18,29 +16,8 @@ public class WhereAnd extends WhereItems {
 	}
 
 	@Override
-	public String render() {
-		final StringBuilder result = new StringBuilder();
-
-		for (WhereItem item : items) {
-			final String build = item.render();
-			if (StringUtils.isBlank(build) == false) {
-
-				if (result.length() > 0) {
-					result.append(" AND ");
-				} else {
-					result.append("(");
-				}
-
-				result.append(build);
-
-			}
-		}
-
-		if (result.length() > 0) {
-			result.append(")");
-		}
-
-		return result.toString();
+	public void render(final StringBuilder result) {
+		render(result, " AND ");
 	}
 
 }
\ No newline at end of file
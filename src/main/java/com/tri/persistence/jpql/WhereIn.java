@@ -1,11 +1,21 @@
 package com.tri.persistence.jpql;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
- * Support for {@literal SQL} In Expressions in Where Clauses.
+ * <p>
+ * Support for {@literal SQL} In Expressions in Where Clauses. Values are
+ * rendered as literals or bound as parameter, see {@link InOptions}.
+ * </p>
+ * <p>
+ * Large value lists may be split into chunks, rendered as disjunction of In
+ * Expressions, e.g. {@code (x IN (1, 2) OR x IN (3, 4))}, or as conjunction
+ * of Not In Expressions, e.g. {@code (x NOT IN (1, 2) AND x NOT IN (3, 4))}.
+ * </p>
  */
 public class WhereIn extends WhereItem {
 
@@ -15,6 +25,24 @@ public class WhereIn extends WhereItem {
 
 	boolean not;
 
+	/** options the values have been rendered or bound with */
+	InOptions options;
+
+	/** number of values per chunk, 0 if values are not chunked */
+	int chunkSize;
+
+	/**
+	 * names of the bound parameters, one per chunk, null if values are
+	 * rendered as literals
+	 */
+	List<String> parameters;
+
+	/**
+	 * rendered predicate up to {@link WhereItems#MEMO_LENGTH}, In Expressions
+	 * do not change once created
+	 */
+	private volatile String rendered;
+
 	/**
 	 * Constructor
 	 * 
@@ -32,18 +60,67 @@ public class WhereIn extends WhereItem {
 	public <V extends Object> WhereIn(final QueryBuilder builder,
 			final String expression, final boolean not,
 			final Collection<V> collection) {
+		this(builder, expression, not, collection, InOptions.LITERAL);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param builder
+	 *            {@link QueryBuilder} to associate, the parameters are added to
+	 *            this builder in parameter mode
+	 * @param expression
+	 *            {@literal SQL} Expression, e.g. expression in
+	 *            {@code expression IN (...)}, actually the left part of the
+	 *            predicate
+	 * @param not
+	 *            use NOT IN if true
+	 * @param collection
+	 *            set of values
+	 * @param options
+	 *            rendering options
+	 */
+	public <V extends Object> WhereIn(final QueryBuilder builder,
+			final String expression, final boolean not,
+			final Collection<V> collection, final InOptions options) {
+		this(builder, expression, not, options, options.isCanonical() ? InValues
+				.canonical(collection) : InValues.copy(collection));
+	}
+
+	/**
+	 * Constructor taking ownership of given values, which are already
+	 * canonical if required by the options, so they are not copied again.
+	 * 
+	 * @param builder
+	 *            {@link QueryBuilder} to associate
+	 * @param expression
+	 *            {@literal SQL} expression, actually the left part of the
+	 *            predicate
+	 * @param not
+	 *            use NOT IN if true
+	 * @param options
+	 *            rendering options
+	 * @param values
+	 *            values, padded in place
+	 */
+	WhereIn(final QueryBuilder builder, final String expression,
+			final boolean not, final InOptions options,
+			final List<Object> values) {
 		super(builder);
-		if (collection.size() == 0) {
+		if (values.size() == 0) {
 			throw new IllegalArgumentException(
 					"Not empty collection required for IN expression ");
 		}
 
 		this.expression = expression;
 		this.not = not;
-		this.collection = new ArrayList<Object>(collection.size());
-		for (Object value : collection) {
-			this.collection.add(value);
-		}
+		this.options = options;
+		this.chunkSize = options.getChunkSize();
+		this.collection = values;
+		pad(options.getPadding());
+		bind(options);
+		fingerprint = structure();
+		length = estimateLength();
 	}
 
 	/**
@@ -70,55 +147,316 @@ public class WhereIn extends WhereItem {
 
 		this.expression = expression;
 		this.not = not;
+		this.options = InOptions.LITERAL;
 		this.collection = new ArrayList<Object>(collection.length);
 		for (Object value : collection) {
 			this.collection.add(value);
 		}
+		fingerprint = structure();
+		length = estimateLength();
 	}
 
-	@Override
-	public Object clone() throws CloneNotSupportedException {
-		final WhereIn clone = (WhereIn) super.clone();
-		// TODO: Evaluate: Implement: null-out builder
-		// deep copy
-		clone.collection = new ArrayList<Object>(collection);
-		return clone;
+	/**
+	 * Pads the collection by repeating its last value, so the last chunk, or
+	 * the whole collection if not chunked, has the padded size. Chunks are
+	 * never padded beyond the chunk size.
+	 */
+	private void pad(final InPadding padding) {
+		if (padding == null) {
+			return;
+		}
+
+		final int size = collection.size();
+		final int last = chunkSize > 0 ? (size - 1) % chunkSize + 1 : size;
+		int padded = padding.pad(last);
+		if (chunkSize > 0 && padded > chunkSize) {
+			padded = chunkSize;
+		}
+
+		final Object value = collection.get(size - 1);
+		for (int i = last; i < padded; i++) {
+			collection.add(value);
+		}
+	}
+
+	private void bind(final InOptions options) {
+		if (options.isParameter()) {
+			if (builder() == null) {
+				throw new NullPointerException(
+						"Query builder required for IN parameter");
+			}
+			parameters = new ArrayList<String>(getChunkCount());
+			for (int i = 0; i < getChunkCount(); i++) {
+				final String parameter = builder().generateParameterName();
+				parameters.add(parameter);
+				builder().setParameter(parameter,
+						new ArrayList<Object>(getChunk(i)));
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of chunks.
+	 * 
+	 * @return number of chunks, 1 if values are not chunked
+	 */
+	int getChunkCount() {
+		if (chunkSize == 0) {
+			return 1;
+		}
+		return (collection.size() + chunkSize - 1) / chunkSize;
+	}
+
+	/**
+	 * Returns the values of the chunk with given index.
+	 * 
+	 * @param index
+	 *            chunk index
+	 * @return view of the chunk values
+	 */
+	List<Object> getChunk(final int index) {
+		if (chunkSize == 0) {
+			return collection;
+		}
+		return collection.subList(index * chunkSize,
+				Math.min((index + 1) * chunkSize, collection.size()));
 	}
 
 	@Override
-	public String render() {
+	Object shape() {
+		if (parameters != null) {
+			return Arrays.asList(WhereIn.class, expression, not, parameters);
+		}
+		return Arrays.asList(WhereIn.class, expression, not, chunkSize,
+				collection);
+	}
 
-		final StringBuilder result = new StringBuilder();
+	/**
+	 * Returns the fingerprint of expression, operator and chunking, literal
+	 * values and names of bound parameters are ignored.
+	 */
+	private long structure() {
+		long result = Fingerprints.of(WhereIn.class);
+		result = Fingerprints.append(result, Fingerprints.of(expression));
+		result = Fingerprints.append(result, not ? 1 : 0);
+		result = Fingerprints.append(result, parameters != null ? 1 : 0);
+		// parameters are rendered once per chunk, literals in any number
+		return Fingerprints.append(result,
+				parameters != null ? parameters.size() : chunkSize);
+	}
 
+	/**
+	 * Returns the length of the rendered predicate, computed once from the
+	 * actual values when the expression is created.
+	 */
+	private int estimateLength() {
+		final int chunks = getChunkCount();
+		// expression and operator per chunk, operators and parentheses
+		// joining the chunks
+		int result = chunks * (expression.length() + (not ? 8 : 4))
+				+ (chunks > 1 ? (chunks - 1) * (not ? 5 : 4) + 2 : 0);
+		if (parameters != null) {
+			for (String parameter : parameters) {
+				result += parameter.length() + 1;
+			}
+			return result;
+		}
+		// parentheses per chunk, separators between values of a chunk
+		result += chunks * 2 + (collection.size() - chunks) * 2;
+		if (collection instanceof InValues.Primitives) {
+			final InValues.Primitives primitives = (InValues.Primitives) collection;
+			for (int i = 0; i < primitives.size(); i++) {
+				result += digits(primitives.getLong(i));
+			}
+			return result;
+		}
 		for (Object value : collection) {
+			result += literalLength(value);
+		}
+		return result;
+	}
 
-			if (result.length() > 0) {
-				result.append(", ");
+	/**
+	 * Returns the length of given value rendered by
+	 * {@link #renderLiteral(StringBuilder, Object)}. Integral numbers, enums
+	 * and strings are measured without rendering them, other values by their
+	 * string representation.
+	 */
+	static int literalLength(final Object value) {
+		if (value instanceof Long || value instanceof Integer
+				|| value instanceof Short || value instanceof Byte) {
+			return digits(((Number) value).longValue());
+		} else if (value instanceof Number) {
+			return value.toString().length();
+		} else if (value instanceof Enum<?>) {
+			return value.getClass().getName().length() + 1
+					+ ((Enum<?>) value).name().length();
+		} else if (value instanceof CharSequence) {
+			return ((CharSequence) value).length() + 2;
+		}
+		return String.valueOf(value).length() + 2;
+	}
+
+	/**
+	 * Returns the length of given value rendered as decimal number.
+	 */
+	private static int digits(final long value) {
+		long remaining = value;
+		int result = remaining < 0 ? 2 : 1;
+		while ((remaining /= 10) != 0) {
+			result++;
+		}
+		return result;
+	}
+
+	@Override
+	boolean isMemoizable() {
+		return getClass() == WhereIn.class;
+	}
+
+	@Override
+	WhereItem renameParameters(final Map<String, String> names) {
+		if (parameters == null) {
+			return this;
+		}
+		List<String> renamed = null;
+		for (int i = 0; i < parameters.size(); i++) {
+			final String name = names.get(parameters.get(i));
+			if (name != null) {
+				if (renamed == null) {
+					renamed = new ArrayList<String>(parameters);
+				}
+				renamed.set(i, name);
 			}
+		}
+		if (renamed == null) {
+			return this;
+		}
+		final WhereIn result;
+		try {
+			result = (WhereIn) clone();
+		} catch (CloneNotSupportedException e) {
+			throw new IllegalStateException(e);
+		}
+		result.parameters = renamed;
+		result.rendered = null;
+		result.length = result.estimateLength();
+		return result;
+	}
 
-			if (value instanceof Number) {
-				result.append(value);
-			} else if (value instanceof Enum<?>) {
-				result.append(value.getClass().getName());
-				result.append(".");
-				result.append(((Enum<?>) value).name());
-			} else {
-				result.append("'");
-				result.append(value);
-				result.append("'");
+	@Override
+	long fingerprint() {
+		return fingerprint;
+	}
+
+	@Override
+	int length() {
+		return length;
+	}
+
+	@Override
+	Object equalityKey() {
+		return Arrays.asList(WhereIn.class, expression, not,
+				parameters != null, chunkSize, collection);
+	}
+
+	@Override
+	public String render() {
+		final StringBuilder result = new StringBuilder(length);
+		render(result);
+		return result.toString();
+	}
+
+	@Override
+	public void render(final StringBuilder result) {
+		final String fragment = rendered;
+		if (fragment != null) {
+			result.append(fragment);
+			return;
+		}
+
+		final int begin = result.length();
+		final int chunks = getChunkCount();
+
+		if (chunks > 1) {
+			result.append("(");
+		}
+
+		for (int i = 0; i < chunks; i++) {
+			if (i > 0) {
+				result.append(not ? " AND " : " OR ");
 			}
+			renderChunk(result, i);
+		}
 
+		if (chunks > 1) {
+			result.append(")");
 		}
+		if (result.length() - begin <= WhereItems.MEMO_LENGTH) {
+			rendered = result.substring(begin);
+		}
+	}
 
+	private void renderChunk(final StringBuilder result, final int index) {
+
+		result.append(expression);
 		if (not == false) {
-			result.insert(0, expression + " IN (");
+			result.append(" IN ");
 		} else {
-			result.insert(0, expression + " NOT IN (");
+			result.append(" NOT IN ");
+		}
+
+		if (parameters != null) {
+			result.append(":");
+			result.append(parameters.get(index));
+			return;
+		}
+
+		result.append("(");
+
+		final int start = chunkSize * index;
+		final int end = chunkSize > 0 ? Math.min(start + chunkSize,
+				collection.size()) : collection.size();
+		final InValues.Primitives primitives = collection instanceof InValues.Primitives
+				? (InValues.Primitives) collection : null;
+		for (int i = start; i < end; i++) {
+
+			if (i > start) {
+				result.append(", ");
+			}
+
+			if (primitives != null) {
+				result.append(primitives.getLong(i));
+			} else {
+				renderLiteral(result, collection.get(i));
+			}
+
 		}
 
 		result.append(")");
-		return result.toString();
 
 	}
 
-}
\ No newline at end of file
+	/**
+	 * Renders given value as {@literal JPQL} literal into given buffer.
+	 * 
+	 * @param result
+	 *            buffer to append to
+	 * @param value
+	 *            number, enum or value rendered as string literal
+	 */
+	static void renderLiteral(final StringBuilder result, final Object value) {
+		if (value instanceof Number) {
+			result.append(value);
+		} else if (value instanceof Enum<?>) {
+			result.append(value.getClass().getName());
+			result.append(".");
+			result.append(((Enum<?>) value).name());
+		} else {
+			result.append("'");
+			result.append(value);
+			result.append("'");
+		}
+	}
+
+}
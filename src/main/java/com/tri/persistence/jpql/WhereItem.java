@@ -1,5 +1,7 @@
 package com.tri.persistence.jpql;
 
+import java.util.Map;
+
 /**
  * Single item or logical structure item of a where clause (actually an
  * {@literal SQL} predicate). There are implementations for single where clause
@@ -9,7 +11,28 @@ package com.tri.persistence.jpql;
  */
 abstract public class WhereItem implements Cloneable {
 
-	private QueryBuilder builder;
+	QueryBuilder builder;
+
+	/**
+	 * Containing item, null for top level items of a clause and for snapshots
+	 * shared with clones, see {@link QueryBuilder#clone()}
+	 */
+	WhereItems parent;
+
+	/**
+	 * structural fingerprint maintained by the implementations of this
+	 * package, see {@link #fingerprint()}
+	 */
+	long fingerprint;
+
+	/**
+	 * estimated length of the rendered fragment maintained by the
+	 * implementations of this package, see {@link #length()}
+	 */
+	int length;
+
+	/** position within {@link #parent} */
+	int index;
 
 	/**
 	 * Constructor
@@ -34,6 +57,141 @@ abstract public class WhereItem implements Cloneable {
 	 */
 	public abstract String render();
 
+	/**
+	 * Renders this item as {@literal JPQL} fragment into given buffer. Nothing
+	 * is appended if this item renders to {@code null}.
+	 * 
+	 * @param result
+	 *            buffer to append to
+	 */
+	public void render(final StringBuilder result) {
+		final String rendered = render();
+		if (rendered != null) {
+			result.append(rendered);
+		}
+	}
+
+	/**
+	 * Prepares this item for a change. Items shared with clones of the
+	 * builder are replaced by snapshots in the clones first, up to the top
+	 * level, so changes are not visible to clones.
+	 * 
+	 * @see QueryBuilder#clone()
+	 */
+	void beforeChange() {
+		if (parent != null) {
+			parent.beforeChange();
+		} else if (builder != null) {
+			builder.beforeChange();
+		}
+	}
+
+	/**
+	 * Completes a change of this item, sets its new fingerprint and length
+	 * estimate and notifies the containing items up to the builder, which drop
+	 * their rendered fragments and apply the differences to their fingerprints
+	 * and estimates, see {@link QueryBuilder#afterChange()}.
+	 * 
+	 * @param fingerprint
+	 *            new fingerprint
+	 * @param length
+	 *            new length estimate
+	 */
+	void afterChange(final long fingerprint, final int length) {
+		final long previous = this.fingerprint;
+		final int previousLength = this.length;
+		this.fingerprint = fingerprint;
+		this.length = length;
+		if (parent != null) {
+			parent.childChanged(index, previous, fingerprint, length
+					- previousLength);
+		} else if (builder != null) {
+			builder.afterChange();
+		}
+	}
+
+	/**
+	 * Returns true if the rendered fragment of this item changes only along
+	 * with {@link #afterChange(long, int)}, so enclosing groups may keep it.
+	 * Items of other packages are not known to do so, groups containing them
+	 * render them again each time.
+	 * 
+	 * @return {@code true} if the fragment may be kept, false by default
+	 */
+	boolean isMemoizable() {
+		return false;
+	}
+
+	/**
+	 * Returns a snapshot of this item to be used by clones of the builder
+	 * instead of this item. Snapshots share their content with this item
+	 * until either of them changes. Immutable items return themselves.
+	 * 
+	 * @return snapshot of this item
+	 */
+	WhereItem snapshot() {
+		return this;
+	}
+
+	/**
+	 * Returns the structural key of this item. Items with equal shapes render
+	 * equal {@literal JPQL} fragments. Defaults to the rendered fragment,
+	 * implementations override this with a cheaper key.
+	 * 
+	 * @return shape of this item
+	 * @see RenderCache
+	 */
+	Object shape() {
+		return render();
+	}
+
+	/**
+	 * Returns the structural fingerprint of this item, see
+	 * {@link QueryBuilder#fingerprint()}. Defaults to the fingerprint of the
+	 * rendered fragment, the implementations of this package maintain theirs
+	 * incrementally.
+	 * 
+	 * @return fingerprint of this item
+	 */
+	long fingerprint() {
+		return Fingerprints.of(render());
+	}
+
+	/**
+	 * Returns the estimated length of the rendered fragment, used to size
+	 * buffers. Defaults to the length of the rendered fragment, the
+	 * implementations of this package maintain theirs incrementally.
+	 * 
+	 * @return estimated number of characters
+	 */
+	int length() {
+		final String rendered = render();
+		return rendered == null ? 0 : rendered.length();
+	}
+
+	/**
+	 * Returns a key equal for items with the same meaning, used by
+	 * {@link WhereItems#normalize()} to remove duplicates.
+	 * 
+	 * @return key or null if duplicates of this item are kept
+	 */
+	Object equalityKey() {
+		return null;
+	}
+
+	/**
+	 * Renames referenced parameters, used for generated parameters of copied
+	 * sub-queries. Immutable items return a renamed copy, items of other
+	 * packages are returned unchanged.
+	 * 
+	 * @param names
+	 *            new names by previous name
+	 * @return this item or its renamed copy
+	 */
+	WhereItem renameParameters(final Map<String, String> names) {
+		return this;
+	}
+
 	/**
 	 * Associate given {@link QueryBuilder} with this object.
 	 * 
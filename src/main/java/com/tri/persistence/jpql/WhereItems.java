@@ -1,7 +1,19 @@
 package com.tri.persistence.jpql;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.tri.persistence.jpql.utils.StringUtils;
 
 /**
  * <p>
@@ -17,8 +29,40 @@ import java.util.Collection;
  */
 abstract public class WhereItems extends WhereItem {
 
+	/**
+	 * equality predicate of a path expression and a named parameter, a number
+	 * or a string literal
+	 */
+	private static final Pattern EQUALITY = Pattern
+			.compile("\\s*([A-Za-z_][\\w.]*)\\s*=\\s*(:[A-Za-z_]\\w*|-?\\d+(?:\\.\\d+)?|'(?:[^']|'')*')\\s*");
+
+	/**
+	 * estimated length of an operator, the longer one, {@code " AND "}, is
+	 * assumed for all groups
+	 */
+	private static final int OPERATOR_LENGTH = 5;
+
+	/**
+	 * maximum length of a kept fragment, larger fragments are rendered again
+	 * from their items so the text of large items, e.g. In Expressions with
+	 * many literals, is not retained once more by each enclosing group
+	 */
+	static final int MEMO_LENGTH = 1024;
+
 	protected ArrayList<WhereItem> items = new ArrayList<WhereItem>();
 
+	/** true if items are shared with a snapshot or clone, copy on change */
+	volatile boolean shared;
+
+	/** rendered fragment, null if not rendered since the last change */
+	private volatile String rendered;
+
+	/**
+	 * true if all items were memoizable when rendered last, see
+	 * {@link WhereItem#isMemoizable()}
+	 */
+	private volatile boolean memoizable;
+
 	/**
 	 * Constructor
 	 * 
@@ -27,19 +71,153 @@ abstract public class WhereItems extends WhereItem {
 	 */
 	public WhereItems(final QueryBuilder builder) {
 		super(builder);
+		fingerprint = Fingerprints.of(getClass());
 	}
 
 	@Override
 	public Object clone() throws CloneNotSupportedException {
 		final WhereItems clone = (WhereItems) super.clone();
 		// deep copy
+		clone.parent = null;
+		clone.shared = false;
 		clone.items = new ArrayList<WhereItem>(items.size());
 		for (WhereItem item : items) {
-			clone.items.add((WhereItem) item.clone());
+			final WhereItem itemClone = (WhereItem) item.clone();
+			itemClone.parent = clone;
+			clone.items.add(itemClone);
 		}
 		return clone;
 	}
 
+	@Override
+	WhereItem snapshot() {
+		final WhereItems snapshot;
+		try {
+			snapshot = (WhereItems) super.clone();
+		} catch (CloneNotSupportedException e) {
+			throw new IllegalStateException(e);
+		}
+		snapshot.parent = null;
+		snapshot.shared = true;
+		shared = true;
+		return snapshot;
+	}
+
+	/**
+	 * Prepares this item for a change, copies shared items. Items keep their
+	 * identity if contained by this object, snapshots of them replace them in
+	 * the previous list still used by others. Items contained by others are
+	 * replaced by snapshots in the copy, which are associated with this
+	 * object and its builder, see {@link #adopt(WhereItem)}.
+	 */
+	@Override
+	void beforeChange() {
+		super.beforeChange();
+		if (shared) {
+			final ArrayList<WhereItem> previous = items;
+			items = new ArrayList<WhereItem>(previous);
+			shared = false;
+			for (int i = 0; i < items.size(); i++) {
+				final WhereItem item = items.get(i);
+				final WhereItem snapshot = item.snapshot();
+				if (snapshot != item) {
+					if (item.parent == this) {
+						previous.set(i, snapshot);
+					} else {
+						adopt(snapshot);
+						items.set(i, snapshot);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Associates a snapshot taken into the list of this object with this
+	 * object and its builder, e.g. with the clone of a builder instead of the
+	 * original one. Items below a snapshot of a group are still shared, they
+	 * are associated when the group copies them before its first change.
+	 * 
+	 * @param snapshot
+	 *            snapshot of an item contained by others
+	 */
+	private void adopt(final WhereItem snapshot) {
+		snapshot.parent = this;
+		if (snapshot instanceof WhereItems) {
+			snapshot.builder = builder();
+		} else {
+			snapshot.setBuilder(builder());
+		}
+	}
+
+	/**
+	 * Adds given item to this object as direct child.
+	 * 
+	 * @param item
+	 *            item to add
+	 */
+	private void addItem(final WhereItem item) {
+		beforeChange();
+		item.parent = this;
+		item.index = items.size();
+		items.add(item);
+		// parentheses enclose the first item, operators precede all others
+		afterChange(fingerprint
+				+ Fingerprints.weigh(item.fingerprint(), item.index), length
+				+ item.length() + (item.index == 0 ? 2 : OPERATOR_LENGTH));
+	}
+
+	/**
+	 * Applies a change of a direct child.
+	 * 
+	 * @param index
+	 *            position of the child
+	 * @param previous
+	 *            previous fingerprint of the child
+	 * @param fingerprint
+	 *            new fingerprint of the child
+	 * @param lengthChange
+	 *            change of the length estimate of the child
+	 */
+	void childChanged(final int index, final long previous,
+			final long fingerprint, final int lengthChange) {
+		afterChange(this.fingerprint
+				+ Fingerprints.weigh(fingerprint, index)
+				- Fingerprints.weigh(previous, index), length + lengthChange);
+	}
+
+	/**
+	 * Recomputes fingerprint, length estimate and the positions of all direct
+	 * children, e.g. after the list has been rebuilt.
+	 */
+	private void updateStructure() {
+		long result = Fingerprints.of(getClass());
+		int estimate = items.isEmpty() ? 0 : 2 - OPERATOR_LENGTH;
+		for (int i = 0; i < items.size(); i++) {
+			final WhereItem item = items.get(i);
+			item.index = i;
+			result += Fingerprints.weigh(item.fingerprint(), i);
+			estimate += item.length() + OPERATOR_LENGTH;
+		}
+		afterChange(result, estimate);
+	}
+
+	@Override
+	void afterChange(final long fingerprint, final int length) {
+		rendered = null;
+		super.afterChange(fingerprint, length);
+	}
+
+	@Override
+	long fingerprint() {
+		return fingerprint;
+	}
+
+	@Override
+	int length() {
+		return length;
+	}
+
 	/**
 	 * Associate given {@link QueryBuilder} with this object and all of its
 	 * items.
@@ -62,7 +240,7 @@ abstract public class WhereItems extends WhereItem {
 	 * @return this object
 	 */
 	public WhereItem add(final WhereItem item) {
-		items.add(item);
+		addItem(item);
 		item.setBuilder(builder());
 		return this;
 	}
@@ -75,7 +253,7 @@ abstract public class WhereItems extends WhereItem {
 	 * @return this object
 	 */
 	public WhereItems add(final String predicate) {
-		items.add(new WhereTextual(builder(), predicate));
+		addItem(new WhereTextual(builder(), predicate));
 		return this;
 	}
 
@@ -83,6 +261,345 @@ abstract public class WhereItems extends WhereItem {
 		return items.isEmpty();
 	}
 
+	/**
+	 * <p>
+	 * Simplifies this item and all items below, the rendered predicate keeps
+	 * its meaning:
+	 * </p>
+	 * <ul>
+	 * <li>nested items of the same operator are flattened, e.g.
+	 * {@code (a AND (b AND c))} becomes {@code (a AND b AND c)}</li>
+	 * <li>empty items and blank predicates are removed, items of a single item
+	 * are replaced by that item</li>
+	 * <li>duplicate textual predicates and In Expressions are removed</li>
+	 * <li>In Expressions on the same expression are merged into one, under
+	 * {@code OR} for {@code IN}, under {@code AND} for {@code NOT IN}</li>
+	 * <li>equality predicates on the same expression under {@code OR} are
+	 * merged into one {@code IN} predicate without duplicates, literals, e.g.
+	 * {@code (x = 1 OR x = 2)}, together with In Expressions rendering
+	 * literals, named parameters, e.g. {@code (x = :a OR x = :b)}, into
+	 * {@code x IN (:a, :b)} still referencing them</li>
+	 * </ul>
+	 * <p>
+	 * Sub-queries are simplified too. Items flattened into this item are no
+	 * longer part of the where clause, do not keep references to them. Merged
+	 * In Expressions keep the options of the first one, in parameter mode they
+	 * bind a new parameter, unused parameters are not bound by
+	 * {@link QueryBuilder#createQuery}.
+	 * </p>
+	 * 
+	 * @return this object
+	 */
+	public WhereItems normalize() {
+		beforeChange();
+		final ArrayList<WhereItem> normalized = new ArrayList<WhereItem>(
+				items.size());
+		final Set<Object> keys = new HashSet<Object>();
+		for (WhereItem item : items) {
+			addNormalized(normalized, keys, item);
+		}
+		items = normalized;
+		mergeIn();
+		updateStructure();
+		return this;
+	}
+
+	/**
+	 * Adds given item normalized to given list. Items of this object's list
+	 * are exclusively used by this object after {@link #beforeChange()}.
+	 */
+	private void addNormalized(final List<WhereItem> normalized,
+			final Set<Object> keys, final WhereItem item) {
+		if (item instanceof WhereItems) {
+			final WhereItems group = (WhereItems) item;
+			group.parent = this;
+			group.normalize();
+			if (group.getClass() == getClass() || group.items.size() <= 1) {
+				for (WhereItem child : group.items) {
+					addNormalized(normalized, keys, child);
+				}
+				return;
+			}
+		} else if (item instanceof WhereSubquery) {
+			item.parent = this;
+			((WhereSubquery) item).getQueryBuilder().where.normalize();
+		} else if (item instanceof WhereTextual) {
+			final String predicate = ((WhereTextual) item).predicate;
+			if (predicate == null || StringUtils.isBlank(predicate, 0)) {
+				return;
+			}
+		}
+
+		final Object key = item.equalityKey();
+		if (key != null && keys.add(key) == false) {
+			return;
+		}
+		item.parent = this;
+		normalized.add(item);
+	}
+
+	/**
+	 * Merges In Expressions on the same expression, {@code IN} under
+	 * {@code OR} and {@code NOT IN} under {@code AND}, keeping the options of
+	 * the first one. Equality predicates under {@code OR}, e.g. {@code x = 1}
+	 * or {@code x = :a}, are merged into a textual {@code IN} predicate, of
+	 * literals together with In Expressions rendering literals, of named
+	 * parameters on their own, e.g. {@code x IN (:a, :b)}. Named parameters
+	 * stay referenced, their values are bound when the query is created.
+	 */
+	private void mergeIn() {
+		final boolean not;
+		if (this instanceof WhereOr) {
+			not = false;
+		} else if (this instanceof WhereAnd) {
+			not = true;
+		} else {
+			return;
+		}
+
+		final Map<Object, List<Integer>> groups = new LinkedHashMap<Object, List<Integer>>();
+		for (int i = 0; i < items.size(); i++) {
+			final Object key = inKey(items.get(i), not);
+			if (key != null) {
+				List<Integer> group = groups.get(key);
+				if (group == null) {
+					group = new ArrayList<Integer>(2);
+					groups.put(key, group);
+				}
+				group.add(i);
+			}
+		}
+
+		final boolean[] removed = new boolean[items.size()];
+		boolean merged = false;
+		for (Map.Entry<Object, List<Integer>> group : groups.entrySet()) {
+			final List<Integer> indexes = group.getValue();
+			if (indexes.size() < 2) {
+				continue;
+			}
+			final List<?> key = (List<?>) group.getKey();
+			final WhereItem item = mergeIn((String) key.get(0),
+					(MergeKind) key.get(1), not, indexes);
+			item.parent = this;
+			items.set(indexes.get(0), item);
+			for (int i = 1; i < indexes.size(); i++) {
+				removed[indexes.get(i)] = true;
+			}
+			merged = true;
+		}
+
+		if (merged) {
+			final ArrayList<WhereItem> remaining = new ArrayList<WhereItem>(
+					items.size());
+			for (int i = 0; i < items.size(); i++) {
+				if (removed[i] == false) {
+					remaining.add(items.get(i));
+				}
+			}
+			items = remaining;
+		}
+	}
+
+	/** kinds of items merged with each other by {@link #mergeIn()} */
+	private enum MergeKind {
+		/** In Expressions rendering literals and literal equalities */
+		LITERAL,
+		/** In Expressions binding their values as parameter */
+		PARAMETER,
+		/** equalities of a named parameter */
+		NAMED
+	}
+
+	/**
+	 * Returns the merge key of given item, i.e. its expression and its
+	 * {@link MergeKind}, or null if the item cannot be merged.
+	 */
+	private Object inKey(final WhereItem item, final boolean not) {
+		if (item instanceof WhereIn) {
+			final WhereIn in = (WhereIn) item;
+			return in.not == not ? Arrays.asList(in.expression,
+					in.parameters != null ? MergeKind.PARAMETER
+							: MergeKind.LITERAL) : null;
+		}
+		if (not || item instanceof WhereTextual == false) {
+			return null;
+		}
+		final Matcher matcher = equality((WhereTextual) item);
+		if (matcher == null) {
+			return null;
+		}
+		return Arrays.asList(matcher.group(1),
+				matcher.group(2).charAt(0) == ':' ? MergeKind.NAMED
+						: MergeKind.LITERAL);
+	}
+
+	private static Matcher equality(final WhereTextual item) {
+		if (item.predicate == null) {
+			return null;
+		}
+		final Matcher matcher = EQUALITY.matcher(item.predicate);
+		return matcher.matches() ? matcher : null;
+	}
+
+	private WhereItem mergeIn(final String expression, final MergeKind kind,
+			final boolean not, final List<Integer> indexes) {
+		final Set<Object> values = new LinkedHashSet<Object>();
+		final Set<String> literals = new LinkedHashSet<String>();
+		final StringBuilder literal = new StringBuilder();
+		InOptions options = null;
+		boolean textual = false;
+		int chunkSize = 0;
+
+		for (int index : indexes) {
+			final WhereItem item = items.get(index);
+			if (item instanceof WhereIn) {
+				final WhereIn in = (WhereIn) item;
+				if (options == null) {
+					options = in.options;
+				}
+				chunkSize = Math.max(chunkSize, in.chunkSize);
+				values.addAll(in.collection);
+				if (kind == MergeKind.LITERAL) {
+					for (Object value : in.collection) {
+						literal.setLength(0);
+						WhereIn.renderLiteral(literal, value);
+						literals.add(literal.toString());
+					}
+				}
+			} else {
+				textual = true;
+				literals.add(equality((WhereTextual) item).group(2));
+			}
+		}
+
+		// In Expressions only, padding and canonical order are applied again
+		if (textual == false) {
+			return new WhereIn(builder(), expression, not, values,
+					options.withChunkSize(chunkSize));
+		}
+
+		// textual equalities are kept as text, chunked and padded as the
+		// merged In Expressions would be
+		final List<String> merged = new ArrayList<String>(literals);
+		final int size = chunkSize > 0 ? chunkSize : merged.size();
+		final int chunks = (merged.size() + size - 1) / size;
+		if (options != null && options.getPadding() != null) {
+			final int last = merged.size() - (chunks - 1) * size;
+			final int padded = Math.min(options.getPadding().pad(last), size);
+			final String value = merged.get(merged.size() - 1);
+			for (int i = last; i < padded; i++) {
+				merged.add(value);
+			}
+		}
+
+		literal.setLength(0);
+		if (chunks > 1) {
+			literal.append("(");
+		}
+		for (int i = 0; i < merged.size(); i++) {
+			if (i % size == 0) {
+				if (i > 0) {
+					literal.append(") OR ");
+				}
+				literal.append(expression).append(" IN (");
+			} else {
+				literal.append(", ");
+			}
+			literal.append(merged.get(i));
+		}
+		literal.append(")");
+		if (chunks > 1) {
+			literal.append(")");
+		}
+		return new WhereTextual(builder(), literal.toString());
+	}
+
+	@Override
+	Object shape() {
+		final List<Object> shapes = new ArrayList<Object>(items.size());
+		for (WhereItem item : items) {
+			shapes.add(item.shape());
+		}
+		return Arrays.asList(getClass(), shapes);
+	}
+
+	@Override
+	public String render() {
+		final StringBuilder result = new StringBuilder(length);
+		render(result);
+		return result.toString();
+	}
+
+	/**
+	 * Renders all items joined by given operator and enclosed in parentheses
+	 * into given buffer. Items rendering blank are skipped, nothing is
+	 * appended if all items are blank. Fragments up to {@link #MEMO_LENGTH}
+	 * are kept until this item or an item below changes, unchanged items are
+	 * not rendered again. Fragments of groups containing items of other
+	 * packages are not kept, see {@link WhereItem#isMemoizable()}.
+	 * 
+	 * @param result
+	 *            buffer to append to
+	 * @param operator
+	 *            operator including surrounding blanks, e.g. {@code " AND "}
+	 */
+	protected void render(final StringBuilder result, final String operator) {
+		final String fragment = rendered;
+		if (fragment != null) {
+			result.append(fragment);
+			return;
+		}
+
+		final int begin = result.length();
+		boolean empty = true;
+		boolean stable = true;
+
+		for (WhereItem item : items) {
+			final int mark = result.length();
+			result.append(empty ? "(" : operator);
+
+			final int start = result.length();
+			item.render(result);
+			stable &= item.isMemoizable();
+			if (StringUtils.isBlank(result, start)) {
+				result.setLength(mark);
+			} else {
+				empty = false;
+			}
+		}
+
+		if (empty == false) {
+			result.append(")");
+		}
+		memoizable = stable;
+		if (stable && result.length() - begin <= MEMO_LENGTH) {
+			rendered = result.substring(begin);
+		}
+	}
+
+	@Override
+	boolean isMemoizable() {
+		return memoizable
+				&& (getClass() == WhereAnd.class || getClass() == WhereOr.class);
+	}
+
+	@Override
+	WhereItem renameParameters(final Map<String, String> names) {
+		beforeChange();
+		for (int i = 0; i < items.size(); i++) {
+			final WhereItem item = items.get(i);
+			final WhereItem renamed = item.renameParameters(names);
+			if (renamed != item) {
+				renamed.parent = this;
+				renamed.index = i;
+				items.set(i, renamed);
+				childChanged(i, item.fingerprint(), renamed.fingerprint(),
+						renamed.length() - item.length());
+			}
+		}
+		return this;
+	}
+
 	/**
 	 * Adds an {@literal SQL} {@code AND} clause.
 	 * 
@@ -90,7 +607,7 @@ abstract public class WhereItems extends WhereItem {
 	 */
 	public WhereAnd and() {
 		final WhereAnd and = new WhereAnd(builder());
-		items.add(and);
+		addItem(and);
 		return and;
 	}
 
@@ -101,7 +618,7 @@ abstract public class WhereItems extends WhereItem {
 	 */
 	public WhereOr or() {
 		final WhereOr or = new WhereOr(builder());
-		items.add(or);
+		addItem(or);
 		return or;
 	}
 
@@ -118,7 +635,7 @@ abstract public class WhereItems extends WhereItem {
 	 */
 	public <V extends Object> WhereItems in(final String expression,
 			final Collection<V> collection) {
-		items.add(new WhereIn(builder(), expression, false, collection));
+		addItem(new WhereIn(builder(), expression, false, collection));
 		return this;
 	}
 
@@ -135,7 +652,109 @@ abstract public class WhereItems extends WhereItem {
 	 */
 	public <V extends Object> WhereItems in(final String expression,
 			final V... array) {
-		items.add(new WhereIn(builder(), expression, false, array));
+		addItem(new WhereIn(builder(), expression, false, array));
+		return this;
+	}
+
+	/**
+	 * Adds an {@literal SQL} {@code IN} predicate.
+	 * 
+	 * @param expression
+	 *            {@literal SQL} expression, e.g. expression in
+	 *            {@code expression IN (...)}, actually the left part of the
+	 *            predicate
+	 * @param collection
+	 *            collection of values
+	 * @param options
+	 *            rendering options, e.g. {@link InOptions#PARAMETER} to bind
+	 *            the values as parameter
+	 * @return this object
+	 */
+	public <V extends Object> WhereItems in(final String expression,
+			final Collection<V> collection, final InOptions options) {
+		addItem(new WhereIn(builder(), expression, false, collection,
+				options));
+		return this;
+	}
+
+	/**
+	 * Adds an {@literal SQL} {@code IN} predicate of {@code long} values, e.g.
+	 * ids. The values are kept in a primitive array, canonical options sort
+	 * and deduplicate them and literals are rendered without boxing each
+	 * value. Values bound as parameter are boxed when bound.
+	 * 
+	 * @param expression
+	 *            {@literal SQL} expression, e.g. expression in
+	 *            {@code expression IN (...)}, actually the left part of the
+	 *            predicate
+	 * @param values
+	 *            values, not changed
+	 * @param options
+	 *            rendering options
+	 * @return this object
+	 */
+	public WhereItems in(final String expression, final long[] values,
+			final InOptions options) {
+		addItem(new WhereIn(builder(), expression, false, options, InValues.of(
+				values, options.isCanonical())));
+		return this;
+	}
+
+	/**
+	 * Adds an {@literal SQL} {@code IN} predicate of {@code int} values.
+	 * 
+	 * @param expression
+	 *            {@literal SQL} expression, actually the left part of the
+	 *            predicate
+	 * @param values
+	 *            values, not changed
+	 * @param options
+	 *            rendering options
+	 * @return this object
+	 * @see #in(String, long[], InOptions)
+	 */
+	public WhereItems in(final String expression, final int[] values,
+			final InOptions options) {
+		addItem(new WhereIn(builder(), expression, false, options, InValues.of(
+				values, options.isCanonical())));
+		return this;
+	}
+
+	/**
+	 * Adds a {@code NOT IN} predicate of {@code long} values.
+	 * 
+	 * @param expression
+	 *            SQL expression, actually the left part of the predicate
+	 * @param values
+	 *            values, not changed
+	 * @param options
+	 *            rendering options
+	 * @return this object
+	 * @see #in(String, long[], InOptions)
+	 */
+	public WhereItems notIn(final String expression, final long[] values,
+			final InOptions options) {
+		addItem(new WhereIn(builder(), expression, true, options, InValues.of(
+				values, options.isCanonical())));
+		return this;
+	}
+
+	/**
+	 * Adds a {@code NOT IN} predicate of {@code int} values.
+	 * 
+	 * @param expression
+	 *            SQL expression, actually the left part of the predicate
+	 * @param values
+	 *            values, not changed
+	 * @param options
+	 *            rendering options
+	 * @return this object
+	 * @see #in(String, long[], InOptions)
+	 */
+	public WhereItems notIn(final String expression, final int[] values,
+			final InOptions options) {
+		addItem(new WhereIn(builder(), expression, true, options, InValues.of(
+				values, options.isCanonical())));
 		return this;
 	}
 
@@ -152,7 +771,28 @@ abstract public class WhereItems extends WhereItem {
 	 */
 	public <V extends Object> WhereItems notIn(final String expression,
 			final Collection<V> collection) {
-		items.add(new WhereIn(builder(), expression, true, collection));
+		addItem(new WhereIn(builder(), expression, true, collection));
+		return this;
+	}
+
+	/**
+	 * Adds a {@code NOT IN} predicate.
+	 * 
+	 * @param expression
+	 *            SQL expression, e.g. expression in
+	 *            {@code expression NOT IN (...)}, actually the left part of the
+	 *            predicate
+	 * @param collection
+	 *            collection of values
+	 * @param options
+	 *            rendering options, e.g. {@link InOptions#PARAMETER} to bind
+	 *            the values as parameter
+	 * @return this object
+	 */
+	public <V extends Object> WhereItems notIn(final String expression,
+			final Collection<V> collection, final InOptions options) {
+		addItem(new WhereIn(builder(), expression, true, collection,
+				options));
 		return this;
 	}
 
@@ -169,7 +809,7 @@ abstract public class WhereItems extends WhereItem {
 	 */
 	public <V extends Object> WhereItems notIn(final String expression,
 			final V... array) {
-		items.add(new WhereIn(builder(), expression, true, array));
+		addItem(new WhereIn(builder(), expression, true, array));
 		return this;
 	}
 
@@ -184,8 +824,71 @@ abstract public class WhereItems extends WhereItem {
 	public QueryBuilder subquery(final String lhsPredicate) {
 		final WhereSubquery subquery = new WhereSubquery(builder(),
 				lhsPredicate);
-		items.add(subquery);
+		addItem(subquery);
 		return subquery.getQueryBuilder();
 	}
 
+	/**
+	 * Adds a sub-query predicate using a copy of given builder as sub-query.
+	 * The parameters of the given builder are added to the associated
+	 * builder. Generated parameters, e.g. of In Expressions bound as
+	 * parameter, whose names are already in use are renamed in the copy.
+	 * 
+	 * @param lhsPredicate
+	 *            left hand side of the predicate, i.e. expression and operator,
+	 *            e.g. "field IN" or "EXISTS"
+	 * @param subquery
+	 *            sub-query to copy
+	 * @return this object
+	 * @throws IllegalArgumentException
+	 *             if a parameter name of the sub-query chosen by the caller is
+	 *             already in use
+	 */
+	public WhereItems subquery(final String lhsPredicate,
+			final QueryBuilder subquery) {
+		final WhereSubquery item = new WhereSubquery(builder(), lhsPredicate,
+				subquery);
+		// the copy keeps its own parameter list, the given builder is not touched
+		final List<Parameter<?>> parameters = item.getQueryBuilder()
+				.getParameters();
+		final Set<String> used = new HashSet<String>();
+		for (Parameter<?> parameter : parameters) {
+			if (parameter.name != null) {
+				used.add(parameter.name);
+			}
+		}
+
+		final List<Parameter<?>> added = new ArrayList<Parameter<?>>(
+				parameters.size());
+		final Map<String, String> names = new HashMap<String, String>();
+		for (Parameter<?> parameter : parameters) {
+			if (parameter.name == null
+					|| builder().isParameterNameUsed(parameter.name) == false) {
+				added.add(parameter);
+				continue;
+			}
+			String name = null;
+			if (QueryBuilder.isGeneratedParameterName(parameter.name)) {
+				do {
+					name = builder().generateParameterName();
+				} while (used.contains(name));
+			}
+			final Parameter<?> renamed = name == null ? null : parameter
+					.rename(name);
+			if (renamed == null) {
+				throw new IllegalArgumentException("Parameter "
+						+ parameter.name + " already in use");
+			}
+			names.put(parameter.name, name);
+			added.add(renamed);
+		}
+		if (names.isEmpty() == false) {
+			item.renameParameters(names);
+		}
+
+		addItem(item);
+		builder().setParameters(added);
+		return this;
+	}
+
 }
\ No newline at end of file
@@ -1,7 +1,5 @@
 package com.tri.persistence.jpql;
 
-import com.tri.persistence.jpql.utils.StringUtils;
-
 /**
  * OR operator for SQL Where clause.
  */
@@ -18,31 +16,8 @@ public class WhereOr extends WhereItems {
 	}
 
 	@Override
-	public String render() {
-		final StringBuilder result = new StringBuilder();
-
-		for (int i = 0; i < items.size(); i++) {
-
-			final String build = items.get(i).render();
-			if (StringUtils.isBlank(build) == false) {
-
-				if (result.length() > 0) {
-					result.append(" OR ");
-				} else {
-					result.append("(");
-				}
-
-				result.append(build);
-
-			}
-
-		}
-
-		if (result.length() > 0) {
-			result.append(")");
-		}
-
-		return result.toString();
+	public void render(final StringBuilder result) {
+		render(result, " OR ");
 	}
 
 }
\ No newline at end of file
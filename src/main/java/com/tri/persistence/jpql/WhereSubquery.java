@@ -1,5 +1,10 @@
 package com.tri.persistence.jpql;
 
+import java.util.Arrays;
+import java.util.Map;
+
+import com.tri.persistence.jpql.utils.StringUtils;
+
 /**
  * Sub query support for where clause.
  */
@@ -27,32 +32,120 @@ public class WhereSubquery extends WhereItem {
 		this.lhsPredicate = lhsPredicate;
 		queryBuilder = new QueryBuilder();
 		queryBuilder.setParent(builder);
+		queryBuilder.setOwner(this);
+		fingerprint = structure();
+		length = estimateLength();
+	}
+
+	/**
+	 * Constructor, uses a copy of given builder as sub-query.
+	 * 
+	 * @param builder
+	 *            {@link QueryBuilder} to associate
+	 * @param lhsPredicate
+	 *            left hand side of the predicate, i.e. expression and operator,
+	 *            e.g. {@code field IN} or {@code EXISTS}
+	 * @param queryBuilder
+	 *            sub-query to copy
+	 */
+	WhereSubquery(final QueryBuilder builder, final String lhsPredicate,
+			final QueryBuilder queryBuilder) {
+		super(builder);
+		this.lhsPredicate = lhsPredicate;
+		try {
+			this.queryBuilder = (QueryBuilder) queryBuilder.clone();
+		} catch (CloneNotSupportedException e) {
+			throw new IllegalStateException(e);
+		}
+		this.queryBuilder.setParent(builder);
+		this.queryBuilder.setOwner(this);
+		fingerprint = structure();
+		length = estimateLength();
 	}
 
 	@Override
 	public Object clone() throws CloneNotSupportedException {
 		final WhereSubquery clone = (WhereSubquery) super.clone();
 		// TODO: Evaluate: Implement: null-out builder
-		// deep copy
+		// copy on write
+		clone.parent = null;
 		clone.queryBuilder = (QueryBuilder) clone.queryBuilder.clone();
+		clone.queryBuilder.setOwner(clone);
 		return clone;
 	}
 
+	@Override
+	WhereItem snapshot() {
+		try {
+			return (WhereItem) clone();
+		} catch (CloneNotSupportedException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
 	void setBuilder(final QueryBuilder builder) {
 		super.setBuilder(builder);
 		queryBuilder.setParent(builder);
 	}
 
+	/**
+	 * Updates fingerprint and length estimate after a change of the sub-query.
+	 */
+	void queryChanged() {
+		afterChange(structure(), estimateLength());
+	}
+
+	private long structure() {
+		return Fingerprints.append(Fingerprints.append(
+				Fingerprints.of(WhereSubquery.class),
+				Fingerprints.of(lhsPredicate)), queryBuilder.fingerprint());
+	}
+
+	private int estimateLength() {
+		return StringUtils.length(lhsPredicate) + 3 + queryBuilder.length();
+	}
+
+	@Override
+	long fingerprint() {
+		return fingerprint;
+	}
+
+	@Override
+	int length() {
+		return length;
+	}
+
+	@Override
+	Object shape() {
+		return Arrays.asList(WhereSubquery.class, lhsPredicate,
+				queryBuilder.shape());
+	}
+
+	@Override
+	boolean isMemoizable() {
+		return getClass() == WhereSubquery.class
+				&& queryBuilder.where.isMemoizable();
+	}
+
+	@Override
+	WhereItem renameParameters(final Map<String, String> names) {
+		queryBuilder.where.renameParameters(names);
+		return this;
+	}
+
 	@Override
 	public String render() {
-		final StringBuilder result = new StringBuilder();
+		final StringBuilder result = new StringBuilder(length);
+		render(result);
+		return result.toString();
+	}
 
+	@Override
+	public void render(final StringBuilder result) {
 		result.append(lhsPredicate);
 		result.append(" (");
-		result.append(queryBuilder.render());
+		queryBuilder.render(result);
 		result.append(")");
-
-		return result.toString();
 	}
 
 	public QueryBuilder getQueryBuilder() {
@@ -1,5 +1,8 @@
 package com.tri.persistence.jpql;
 
+import java.util.Arrays;
+import java.util.Map;
+
 /**
  * Single textual SQL Where Clause predicate. E.g. a comparison predicate like
  * {@code field=:whatever}.
@@ -19,6 +22,9 @@ public class WhereTextual extends WhereItem {
 	public WhereTextual(final QueryBuilder builder, final String predicate) {
 		super(builder);
 		this.predicate = predicate;
+		fingerprint = Fingerprints.append(Fingerprints.of(WhereTextual.class),
+				Fingerprints.of(predicate));
+		length = predicate == null ? 0 : predicate.length();
 	}
 
 	@Override
@@ -26,4 +32,47 @@ public class WhereTextual extends WhereItem {
 		return predicate;
 	}
 
+	@Override
+	Object shape() {
+		return predicate;
+	}
+
+	@Override
+	long fingerprint() {
+		return fingerprint;
+	}
+
+	@Override
+	int length() {
+		return length;
+	}
+
+	@Override
+	Object equalityKey() {
+		return predicate == null ? null : Arrays.asList(WhereTextual.class,
+				predicate.trim());
+	}
+
+	@Override
+	boolean isMemoizable() {
+		return getClass() == WhereTextual.class;
+	}
+
+	@Override
+	WhereItem renameParameters(final Map<String, String> names) {
+		if (predicate == null) {
+			return this;
+		}
+		final String renamed = ParameterReferences.rename(predicate, names);
+		return renamed == predicate ? this : new WhereTextual(builder(),
+				renamed);
+	}
+
+	@Override
+	public void render(final StringBuilder result) {
+		if (predicate != null) {
+			result.append(predicate);
+		}
+	}
+
 }
\ No newline at end of file
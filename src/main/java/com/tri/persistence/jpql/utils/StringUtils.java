@@ -23,7 +23,11 @@ public class StringUtils {
 		}
 
 		// two or more elements
-		final StringBuilder builder = new StringBuilder();
+		int length = 2 * (list.size() - 1);
+		for (String item : list) {
+			length += length(item);
+		}
+		final StringBuilder builder = new StringBuilder(length);
 		for (String item : list) {
 			if (builder.length() > 0) {
 				builder.append(", ");
@@ -34,6 +38,24 @@ public class StringUtils {
 
 	}
 
+	/**
+	 * Appends items of a text list to given buffer, separating items by comma.
+	 * 
+	 * @param list
+	 *            list of text items
+	 * @param builder
+	 *            buffer to append to
+	 */
+	public static void join(final List<String> list,
+			final StringBuilder builder) {
+		for (int i = 0; i < list.size(); i++) {
+			if (i > 0) {
+				builder.append(", ");
+			}
+			builder.append(list.get(i));
+		}
+	}
+
 	/**
 	 * Joins items of a text array, separating items by comma.
 	 * 
@@ -53,7 +75,11 @@ public class StringUtils {
 		}
 
 		// two or more elements
-		final StringBuilder builder = new StringBuilder();
+		int length = 2 * (list.length - 1);
+		for (String item : list) {
+			length += length(item);
+		}
+		final StringBuilder builder = new StringBuilder(length);
 		for (String item : list) {
 			if (builder.length() > 0) {
 				builder.append(", ");
@@ -64,6 +90,17 @@ public class StringUtils {
 
 	}
 
+	/**
+	 * Returns the number of characters appended for given string.
+	 * 
+	 * @param str
+	 *            the String to append, may be null
+	 * @return length of the string, 4 for {@code "null"}
+	 */
+	public static int length(final String str) {
+		return str == null ? 4 : str.length();
+	}
+
 	/**
 	 * Returns true if the given string is null, empty or contains whitespace
 	 * only.
@@ -85,4 +122,23 @@ public class StringUtils {
 		return true;
 	}
 
-}
+	/**
+	 * Returns true if the given character sequence is empty or contains
+	 * whitespace only from given start index to its end.
+	 * 
+	 * @param str
+	 *            the character sequence to check
+	 * @param start
+	 *            index of the first character to check
+	 * @return {@code true} if the checked range is empty or whitespace
+	 */
+	public static boolean isBlank(final CharSequence str, final int start) {
+		for (int i = start; i < str.length(); i++) {
+			if (Character.isWhitespace(str.charAt(i)) == false) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
\ No newline at end of file
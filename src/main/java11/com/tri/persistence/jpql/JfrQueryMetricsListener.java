@@ -0,0 +1,161 @@
+package com.tri.persistence.jpql;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * <p>
+ * Emits JDK Flight Recorder events for rendering and query creation, to be
+ * correlated with GC pauses and database latency in continuous profiling:
+ * </p>
+ * 
+ * <pre>
+ * builder.setMetricsListener(QueryMetricsListener.jfr());
+ * </pre>
+ * <p>
+ * The events are {@value #RENDER_EVENT} and {@value #CREATE_QUERY_EVENT}.
+ * While both are disabled in the running recordings, or no recording is
+ * running, the builder does not measure anything. The event durations cover
+ * the work itself, begun before rendering or query creation and committed
+ * after it. Requires a JDK providing the {@code jdk.jfr} module, i.e. 11 or
+ * later. This class is compiled separately for Java 11, obtain it through
+ * {@link QueryMetricsListener#jfr()} to keep running on Java 8.
+ * </p>
+ */
+public final class JfrQueryMetricsListener implements QueryMetricsListener {
+
+	/** name of the render event */
+	public static final String RENDER_EVENT = "com.tri.persistence.jpql.Render";
+
+	/** name of the query creation event */
+	public static final String CREATE_QUERY_EVENT = "com.tri.persistence.jpql.CreateQuery";
+
+	/** the listener, stateless */
+	public static final JfrQueryMetricsListener INSTANCE = new JfrQueryMetricsListener();
+
+	private static final EventType RENDER_TYPE = EventType
+			.getEventType(RenderEvent.class);
+
+	private static final EventType CREATE_QUERY_TYPE = EventType
+			.getEventType(CreateQueryEvent.class);
+
+	private JfrQueryMetricsListener() {
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return RENDER_TYPE.isEnabled() || CREATE_QUERY_TYPE.isEnabled();
+	}
+
+	@Override
+	public Object renderStarted() {
+		final RenderEvent event = new RenderEvent();
+		if (event.isEnabled() == false) {
+			return null;
+		}
+		event.begin();
+		return event;
+	}
+
+	@Override
+	public void rendered(final RenderMetrics metrics, final Object context) {
+		if (context instanceof RenderEvent) {
+			final RenderEvent event = (RenderEvent) context;
+			event.end();
+			if (event.shouldCommit()) {
+				event.fingerprint = metrics.getFingerprint();
+				event.length = metrics.getLength();
+				event.cacheHit = Boolean.TRUE.equals(metrics.getCacheHit());
+				event.whereNodeCount = metrics.getWhereNodeCount();
+				event.inCount = metrics.getInCount();
+				event.inValueCount = metrics.getInValueCount();
+				event.maxInSize = metrics.getMaxInSize();
+				event.commit();
+			}
+		}
+	}
+
+	@Override
+	public Object queryCreationStarted() {
+		final CreateQueryEvent event = new CreateQueryEvent();
+		if (event.isEnabled() == false) {
+			return null;
+		}
+		event.begin();
+		return event;
+	}
+
+	@Override
+	public void queryCreated(final RenderMetrics metrics, final long nanos,
+			final int parameterCount, final Object context) {
+		if (context instanceof CreateQueryEvent) {
+			final CreateQueryEvent event = (CreateQueryEvent) context;
+			event.end();
+			if (event.shouldCommit()) {
+				event.fingerprint = metrics.getFingerprint();
+				event.length = metrics.getLength();
+				event.inValueCount = metrics.getInValueCount();
+				event.parameterCount = parameterCount;
+				event.commit();
+			}
+		}
+	}
+
+	@Name(RENDER_EVENT)
+	@Label("JPQL Render")
+	@Description("Query rendered by a QueryBuilder")
+	@Category("JPQL")
+	@StackTrace(false)
+	static class RenderEvent extends Event {
+
+		@Label("Fingerprint")
+		@Description("Fingerprint of the query shape")
+		long fingerprint;
+
+		@Label("Length")
+		int length;
+
+		@Label("Cache Hit")
+		boolean cacheHit;
+
+		@Label("Where Items")
+		int whereNodeCount;
+
+		@Label("In Expressions")
+		int inCount;
+
+		@Label("In Values")
+		int inValueCount;
+
+		@Label("Largest In Expression")
+		int maxInSize;
+
+	}
+
+	@Name(CREATE_QUERY_EVENT)
+	@Label("JPQL Create Query")
+	@Description("JPA query created by a QueryBuilder, including rendering and binding")
+	@Category("JPQL")
+	static class CreateQueryEvent extends Event {
+
+		@Label("Fingerprint")
+		@Description("Fingerprint of the query shape")
+		long fingerprint;
+
+		@Label("Length")
+		int length;
+
+		@Label("In Values")
+		int inValueCount;
+
+		@Label("Parameters")
+		int parameterCount;
+
+	}
+
+}
@@ -0,0 +1,100 @@
+package com.tri.persistence.jpql;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import javax.persistence.TemporalType;
+
+import org.junit.jupiter.api.Test;
+
+public class BindingPlanTest {
+
+	@Test
+	public void bind() {
+		// setup
+		final Date date = new Date();
+		final Calendar calendar = Calendar.getInstance();
+		final BindingPlan plan = BindingPlan.of(Arrays.<Parameter<?>> asList(
+				new ParameterObject("a", 1), new ParameterObject(2, "b"),
+				new ParameterDate("d", date, TemporalType.DATE),
+				new ParameterCalendar(4, calendar, TemporalType.TIMESTAMP)));
+		final Query query = mock(Query.class);
+		// test
+		plan.bind(query, new Object[] { 1, "b", date, calendar });
+		// check
+		assertThat(plan.size()).isEqualTo(4);
+		assertThat(plan.indexOf("d")).isEqualTo(2);
+		verify(query).setParameter("a", (Object) 1);
+		verify(query).setParameter(2, (Object) "b");
+		verify(query).setParameter("d", date, TemporalType.DATE);
+		verify(query).setParameter(4, calendar, TemporalType.TIMESTAMP);
+	}
+
+	@Test
+	public void builderReusesPlanUntilParametersChange() {
+		// setup
+		final QueryBuilder builder = new QueryBuilder().select.add("e").from
+				.add("Entity e").setParameter("a", 1);
+		builder.where.add("e.a=:a").add("e.b=:b");
+		final EntityManager manager = mock(EntityManager.class);
+		final Query first = mock(Query.class);
+		final Query second = mock(Query.class);
+		when(manager.createQuery(builder.render())).thenReturn(first, second);
+		// test
+		builder.createQuery(manager);
+		builder.setParameter("b", 2);
+		builder.createQuery(manager);
+		// check
+		verify(first).setParameter("a", (Object) 1);
+		verify(second).setParameter("a", (Object) 1);
+		verify(second).setParameter("b", (Object) 2);
+	}
+
+	@Test
+	public void bindCustomParameter() {
+		// setup
+		final Parameter<String> custom = new Parameter<String>("c", "x") {
+			@Override
+			public void apply(final Query query) {
+				query.setParameter(name, value.toUpperCase());
+			}
+		};
+		final QueryBuilder builder = new QueryBuilder().select.add("e").from
+				.add("Entity e").setParameter(custom);
+		builder.where.add("e.c=:c");
+		final EntityManager manager = mock(EntityManager.class);
+		final Query query = mock(Query.class);
+		when(manager.createQuery(builder.render())).thenReturn(query);
+		// test
+		builder.createQuery(manager);
+		// check
+		verify(query).setParameter("c", (Object) "X");
+	}
+
+	@Test
+	public void renderCacheSharesPlan() {
+		// setup
+		final RenderCache cache = new RenderCache(10);
+		final String query = "SELECT e FROM Entity e WHERE e.a=:a";
+		// test
+		final BindingPlan first = cache.getBindingPlan(query,
+				Arrays.<Parameter<?>> asList(new ParameterObject("a", 1)));
+		final BindingPlan second = cache.getBindingPlan(query,
+				Arrays.<Parameter<?>> asList(new ParameterObject("a", 2)));
+		final BindingPlan other = cache.getBindingPlan(query,
+				Arrays.<Parameter<?>> asList(new ParameterDate("a", new Date(),
+						TemporalType.DATE)));
+		// check
+		assertThat(second).isSameAs(first);
+		assertThat(other).isNotSameAs(first);
+	}
+
+}
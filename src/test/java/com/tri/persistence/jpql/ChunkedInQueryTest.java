@@ -0,0 +1,61 @@
+package com.tri.persistence.jpql;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import javax.persistence.TypedQuery;
+
+import org.junit.jupiter.api.Test;
+
+public class ChunkedInQueryTest {
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void getResultList() {
+		// setup
+		final QueryBuilder builder = new QueryBuilder().select.add("e").from
+				.add("Entity e");
+		final String jpql = "SELECT e FROM Entity e WHERE (e.id IN :p_1)";
+		final EntityManager manager = mock(EntityManager.class);
+		final TypedQuery<String> query = mock(TypedQuery.class);
+		when(manager.createQuery(jpql, String.class)).thenReturn(query);
+		when(query.getResultList()).thenReturn(Arrays.asList("a", "b"),
+				Arrays.asList("c"));
+		// test
+		final List<String> result = new ChunkedInQuery(builder, "e.id",
+				Arrays.asList(1, 2, 3), 2).getResultList(manager, String.class);
+		// check
+		assertThat(result).containsExactly("a", "b", "c");
+		verify(query).setParameter(eq("p_1"), eq(Arrays.asList(1, 2)));
+		verify(query).setParameter(eq("p_1"), eq(Arrays.asList(3)));
+		assertThat(builder.render()).isEqualTo("SELECT e FROM Entity e");
+	}
+
+	@Test
+	public void executeUpdate() {
+		// setup
+		final QueryBuilder builder = new QueryBuilder().deleteFrom
+				.set("Entity e");
+		final EntityManager manager = mock(EntityManager.class);
+		final Query query = mock(Query.class);
+		when(manager.createQuery("DELETE FROM Entity e WHERE (e.id IN :p_1)"))
+				.thenReturn(query);
+		when(query.executeUpdate()).thenReturn(2, 1);
+		// test
+		final int result = new ChunkedInQuery(builder, "e.id", Arrays.asList(
+				1, 2, 3), 2).executeUpdate(manager);
+		// check
+		assertThat(result).isEqualTo(3);
+		verify(query, times(2)).executeUpdate();
+	}
+
+}
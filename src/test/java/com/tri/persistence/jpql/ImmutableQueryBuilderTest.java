@@ -0,0 +1,117 @@
+package com.tri.persistence.jpql;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+public class ImmutableQueryBuilderTest {
+
+	private static final ImmutableQueryBuilder BASE = new ImmutableQueryBuilder()
+			.select("e").from("Entity e").where("e.active=true")
+			.setParameter("base", 1);
+
+	@Test
+	public void extendIndependently() {
+		// test
+		final ImmutableQueryBuilder byName = BASE.where("e.name=:name")
+				.setParameter("name", "x");
+		final ImmutableQueryBuilder ordered = BASE.order("e.id");
+		// check
+		assertThat(BASE.render()).isEqualTo(
+				"SELECT e FROM Entity e WHERE (e.active=true)");
+		assertThat(byName.render()).isEqualTo(
+				"SELECT e FROM Entity e WHERE (e.active=true AND e.name=:name)");
+		assertThat(ordered.render()).isEqualTo(
+				"SELECT e FROM Entity e WHERE (e.active=true) ORDER BY e.id");
+		assertThat(BASE.getParameters()).hasSize(1);
+		assertThat(byName.getParameters()).hasSize(2);
+		assertThat(ordered.getParameters()).hasSize(1);
+	}
+
+	@Test
+	public void extendConcurrently() throws Exception {
+		// setup
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		final List<Future<String>> futures = new ArrayList<>();
+		// test
+		try {
+			for (int i = 0; i < 64; i++) {
+				final int n = i;
+				futures.add(executor.submit(() -> BASE.where("e.n=" + n)
+						.render()));
+			}
+			// check
+			for (int i = 0; i < 64; i++) {
+				assertThat(futures.get(i).get()).isEqualTo(
+						"SELECT e FROM Entity e WHERE (e.active=true AND e.n="
+								+ i + ")");
+			}
+		} finally {
+			executor.shutdown();
+		}
+		assertThat(BASE.render()).isEqualTo(
+				"SELECT e FROM Entity e WHERE (e.active=true)");
+	}
+
+	@Test
+	public void convert() {
+		// setup
+		final QueryBuilder mutable = BASE.toQueryBuilder();
+		// test
+		mutable.where.add("e.x=1");
+		final ImmutableQueryBuilder immutable = ImmutableQueryBuilder
+				.of(mutable);
+		mutable.where.add("e.y=1");
+		// check
+		assertThat(BASE.render()).isEqualTo(
+				"SELECT e FROM Entity e WHERE (e.active=true)");
+		assertThat(immutable.render()).isEqualTo(
+				"SELECT e FROM Entity e WHERE (e.active=true AND e.x=1)");
+	}
+
+	@Test
+	public void subquery() {
+		// setup
+		final ImmutableQueryBuilder sub = new ImmutableQueryBuilder()
+				.select("s").from("Sub s").where("s.v=:v")
+				.setParameter("v", 2);
+		// test
+		final ImmutableQueryBuilder query = BASE.subquery("EXISTS", sub);
+		// check
+		assertThat(query.render()).isEqualTo(
+				"SELECT e FROM Entity e WHERE (e.active=true "
+						+ "AND EXISTS (SELECT s FROM Sub s WHERE (s.v=:v)))");
+		assertThat(query.getParameters()).hasSize(2);
+		assertThat(sub.getParameters()).hasSize(1);
+		assertThatThrownBy(() -> query.subquery("EXISTS", sub))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	public void subqueryGeneratedParameters() {
+		// setup
+		final QueryBuilder subquery = new QueryBuilder().select.add("s").from
+				.add("Sub s");
+		subquery.where.in("s.id", Arrays.asList(1, 2), InOptions.PARAMETER);
+		final ImmutableQueryBuilder sub = ImmutableQueryBuilder.of(subquery);
+		final QueryBuilder builder = BASE.toQueryBuilder();
+		builder.where.in("e.id", Arrays.asList(3), InOptions.PARAMETER);
+		final ImmutableQueryBuilder base = ImmutableQueryBuilder.of(builder);
+		// test
+		final ImmutableQueryBuilder query = base.subquery("EXISTS", sub);
+		// check
+		assertThat(query.render()).isEqualTo(
+				"SELECT e FROM Entity e WHERE (e.active=true AND e.id IN :p_1 "
+						+ "AND EXISTS (SELECT s FROM Sub s WHERE (s.id IN :p_2)))");
+		assertThat(sub.render()).endsWith("(s.id IN :p_1)");
+	}
+
+}
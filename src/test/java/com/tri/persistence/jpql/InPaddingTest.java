@@ -0,0 +1,47 @@
+package com.tri.persistence.jpql;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.Test;
+
+public class InPaddingTest {
+
+	@Test
+	public void padPowerOfTwo() {
+		// setup
+		InPadding padding = InPadding.POWER_OF_TWO;
+		// test, check
+		assertThat(padding.pad(1)).isEqualTo(1);
+		assertThat(padding.pad(2)).isEqualTo(2);
+		assertThat(padding.pad(3)).isEqualTo(4);
+		assertThat(padding.pad(7)).isEqualTo(8);
+		assertThat(padding.pad(8)).isEqualTo(8);
+		assertThat(padding.pad(9)).isEqualTo(16);
+		assertThat(padding.pad(1000)).isEqualTo(1024);
+	}
+
+	@Test
+	public void padLadder() {
+		// setup
+		InPadding padding = new InPadding(10, 50, 100);
+		// test, check
+		assertThat(padding.pad(1)).isEqualTo(1);
+		assertThat(padding.pad(7)).isEqualTo(10);
+		assertThat(padding.pad(10)).isEqualTo(10);
+		assertThat(padding.pad(11)).isEqualTo(50);
+		assertThat(padding.pad(100)).isEqualTo(100);
+		assertThat(padding.pad(101)).isEqualTo(200);
+		assertThat(padding.pad(250)).isEqualTo(300);
+	}
+
+	@Test
+	public void ladderAscendingRequired() {
+		// test, check
+		assertThatThrownBy(() -> new InPadding(10, 10)).isInstanceOf(
+				IllegalArgumentException.class);
+		assertThatThrownBy(() -> new InPadding()).isInstanceOf(
+				IllegalArgumentException.class);
+	}
+
+}
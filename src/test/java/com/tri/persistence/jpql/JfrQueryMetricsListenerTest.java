@@ -0,0 +1,88 @@
+package com.tri.persistence.jpql;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.jupiter.api.Test;
+
+public class JfrQueryMetricsListenerTest {
+
+	private QueryBuilder createBuilder() {
+		final QueryBuilder builder = new QueryBuilder().select.add("e").from
+				.add("Entity e")
+				.setMetricsListener(QueryMetricsListener.jfr());
+		builder.where.in("e.a", Arrays.asList(1, 2, 3));
+		return builder;
+	}
+
+	@Test
+	public void loadedReflectively() throws Exception {
+		// test & check
+		assertThat(QueryMetricsListener.jfr()).isSameAs(
+				JfrQueryMetricsListener.INSTANCE);
+		// the core stays on Java 8, the listener requires Java 11
+		assertThat(majorVersion(QueryBuilder.class)).isEqualTo(52);
+		assertThat(majorVersion(JfrQueryMetricsListener.class)).isEqualTo(55);
+	}
+
+	private static int majorVersion(final Class<?> type) throws IOException {
+		try (DataInputStream in = new DataInputStream(type
+				.getResourceAsStream(type.getSimpleName() + ".class"))) {
+			in.readInt();
+			in.readUnsignedShort();
+			return in.readUnsignedShort();
+		}
+	}
+
+	@Test
+	public void disabled() {
+		// check
+		assertThat(JfrQueryMetricsListener.INSTANCE.isEnabled()).isFalse();
+	}
+
+	@Test
+	public void rendered() throws Exception {
+		// setup
+		final QueryBuilder builder = createBuilder();
+		final List<RecordedEvent> events = new ArrayList<RecordedEvent>();
+		final Path file = Files.createTempFile("jpql", ".jfr");
+		// test
+		try (final Recording recording = new Recording()) {
+			recording.enable(JfrQueryMetricsListener.RENDER_EVENT);
+			recording.start();
+			assertThat(JfrQueryMetricsListener.INSTANCE.isEnabled()).isTrue();
+			builder.render();
+			recording.stop();
+			recording.dump(file);
+			for (final RecordedEvent event : RecordingFile.readAllEvents(file)) {
+				if (event.getEventType().getName()
+						.equals(JfrQueryMetricsListener.RENDER_EVENT)) {
+					events.add(event);
+				}
+			}
+		} finally {
+			Files.delete(file);
+		}
+		// check
+		assertThat(events).hasSize(1);
+		final RecordedEvent event = events.get(0);
+		assertThat(event.getInt("inCount")).isEqualTo(1);
+		assertThat(event.getInt("inValueCount")).isEqualTo(3);
+		assertThat(event.getInt("length")).isEqualTo(builder.render().length());
+		assertThat(event.getLong("fingerprint")).isNotZero();
+		assertThat(event.getDuration()).isGreaterThan(Duration.ZERO);
+	}
+
+}
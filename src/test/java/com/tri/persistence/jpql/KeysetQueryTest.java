@@ -0,0 +1,167 @@
+package com.tri.persistence.jpql;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+import java.util.UUID;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+
+import org.junit.jupiter.api.Test;
+
+public class KeysetQueryTest {
+
+	private final QueryBuilder builder = new QueryBuilder().select.add("e").from
+			.add("Entity e");
+
+	private final KeysetQuery keyset = new KeysetQuery(builder, 2,
+			new OrderColumn("e.created", Order.DESC), new OrderColumn("e.id"));
+
+	@Test
+	public void firstPageQuery() {
+		// test
+		final QueryBuilder query = keyset.createPageQuery(null);
+		// check
+		assertThat(query.render()).isEqualTo(
+				"SELECT e FROM Entity e ORDER BY e.created DESC, e.id");
+		assertThat(builder.render()).isEqualTo("SELECT e FROM Entity e");
+	}
+
+	@Test
+	public void nextPageQuery() {
+		// test
+		final QueryBuilder query = keyset.createPageQuery(new Object[] { 5L,
+				7L });
+		// check
+		assertThat(query.render()).isEqualTo(
+				"SELECT e FROM Entity e WHERE ((e.created < :p_1 "
+						+ "OR (e.created = :p_1 AND e.id > :p_2))) "
+						+ "ORDER BY e.created DESC, e.id");
+		assertThat(query.getParameters()).extracting("name").containsExactly(
+				"p_1", "p_2");
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void getPage() {
+		// setup
+		final EntityManager manager = mock(EntityManager.class);
+		final TypedQuery<Long[]> query = mock(TypedQuery.class);
+		when(manager.createQuery(anyString(), eq(Long[].class))).thenReturn(
+				query);
+		when(query.getResultList()).thenReturn(
+				new ArrayList<Long[]>(Arrays.asList(new Long[] { 9L, 1L },
+						new Long[] { 8L, 2L }, new Long[] { 8L, 3L })));
+		// test
+		final KeysetPage<Long[]> page = keyset.firstPage(manager, Long[].class,
+				row -> new Object[] { row[0], row[1] });
+		// check
+		verify(query).setMaxResults(3);
+		assertThat(page.getResults()).hasSize(2);
+		assertThat(page.hasNext()).isTrue();
+		assertThat(KeysetQuery.decode(page.getNextToken())).containsExactly(
+				8L, 2L);
+	}
+
+	@Test
+	public void rejectForeignToken() throws IOException {
+		// setup
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(new Object[] { new ArrayList<Object>() });
+		}
+		final String token = Base64.getUrlEncoder().encodeToString(
+				bytes.toByteArray());
+		// test & check
+		assertThatThrownBy(() -> KeysetQuery.decode(token)).isInstanceOf(
+				IllegalArgumentException.class);
+	}
+
+	@Test
+	public void tokenValues() {
+		// setup
+		final Object[] key = { 1L, 2, (short) 3, (byte) 4, 0.5d, 1.5f, true,
+				'c', "s", new BigInteger("12345678901234567890"),
+				new BigDecimal("1.10"), UUID.randomUUID(), new Date(5L),
+				new java.sql.Date(6L), new Time(7L), new Timestamp(8L),
+				Instant.ofEpochSecond(9L), LocalDate.of(2020, 1, 2),
+				LocalTime.of(3, 4), LocalDateTime.of(2020, 1, 2, 3, 4),
+				OffsetDateTime.of(2020, 1, 2, 3, 4, 5, 6, ZoneOffset.UTC),
+				ZonedDateTime.of(2020, 1, 2, 3, 4, 5, 6, ZoneId.of("Europe/Berlin")),
+				DayOfWeek.MONDAY };
+		// test
+		final Object[] decoded = KeysetQuery.decode(KeysetQuery.encode(key));
+		// check
+		assertThat(decoded).containsExactly(key);
+	}
+
+	@Test
+	public void rejectUnsupportedKey() {
+		// test & check
+		assertThatThrownBy(
+				() -> KeysetQuery.encode(new Object[] { new ArrayList<Object>() }))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> KeysetQuery.encode(new Object[] { null }))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	public void rejectInvalidToken() {
+		// setup
+		final String truncated = Base64.getUrlEncoder().encodeToString(
+				new byte[] { 1, 2, 'J', 0 });
+		final String notEnum = Base64.getUrlEncoder().encodeToString(
+				new byte[] { 1, 1, 'E', 0, 16, 'j', 'a', 'v', 'a', '.', 'l',
+						'a', 'n', 'g', '.', 'S', 't', 'r', 'i', 'n', 'g', 0, 1,
+						'x' });
+		final StringBuilder large = new StringBuilder();
+		for (int i = 0; i < 10000; i++) {
+			large.append('A');
+		}
+		// test & check
+		assertThatThrownBy(() -> KeysetQuery.decode(truncated)).isInstanceOf(
+				IllegalArgumentException.class);
+		assertThatThrownBy(() -> KeysetQuery.decode(notEnum)).isInstanceOf(
+				IllegalArgumentException.class);
+		assertThatThrownBy(() -> KeysetQuery.decode(large.toString()))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	public void rejectOrderBy() {
+		// setup
+		final QueryBuilder ordered = new QueryBuilder().select.add("e").from
+				.add("Entity e").order.add("e.name");
+		// test & check
+		assertThatThrownBy(
+				() -> new KeysetQuery(ordered, 2, new OrderColumn("e.id")))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+}
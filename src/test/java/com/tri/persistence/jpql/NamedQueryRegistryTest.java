@@ -0,0 +1,85 @@
+package com.tri.persistence.jpql;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Query;
+import javax.persistence.TypedQuery;
+
+import org.junit.jupiter.api.Test;
+
+public class NamedQueryRegistryTest {
+
+	private NamedQueryRegistry createRegistry() {
+		return new NamedQueryRegistry().add(
+				"byName",
+				new QueryBuilder().select.add("e").from.add("Entity e").where
+						.add("e.name=:name").builder()
+						.setParameter("name", "n1"));
+	}
+
+	@Test
+	public void register() {
+		// setup
+		final NamedQueryRegistry registry = createRegistry();
+		final EntityManagerFactory factory = mock(EntityManagerFactory.class);
+		final EntityManager manager = mock(EntityManager.class);
+		final Query query = mock(Query.class);
+		when(factory.createEntityManager()).thenReturn(manager);
+		when(
+				manager.createQuery("SELECT e FROM Entity e "
+						+ "WHERE (e.name=:name)")).thenReturn(query);
+		// test
+		registry.register(factory);
+		// check
+		verify(factory).addNamedQuery("byName", query);
+		verify(manager).close();
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void createQuery() {
+		// setup
+		final NamedQueryRegistry registry = createRegistry();
+		final EntityManager manager = mock(EntityManager.class);
+		final TypedQuery<String> query = mock(TypedQuery.class);
+		when(manager.createNamedQuery("byName", String.class)).thenReturn(
+				query);
+		// test
+		final TypedQuery<String> result = registry.createQuery(manager,
+				"byName", String.class, "n2");
+		// check
+		assertThat(result).isSameAs(query);
+		verify(query).setParameter(eq("name"), eq((Object) "n2"));
+	}
+
+	@Test
+	public void createQueryWithCompiledValues() {
+		// setup
+		final NamedQueryRegistry registry = createRegistry();
+		final EntityManager manager = mock(EntityManager.class);
+		final Query query = mock(Query.class);
+		when(manager.createNamedQuery("byName")).thenReturn(query);
+		// test
+		registry.createQuery(manager, "byName");
+		// check
+		verify(query).setParameter(eq("name"), eq((Object) "n1"));
+	}
+
+	@Test
+	public void createUnknownQuery() {
+		// setup
+		final NamedQueryRegistry registry = createRegistry();
+		// test, check
+		assertThatThrownBy(
+				() -> registry.createQuery(mock(EntityManager.class), "other"))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+}
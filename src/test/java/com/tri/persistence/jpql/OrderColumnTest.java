@@ -2,7 +2,7 @@ package com.tri.persistence.jpql;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
-import org.junit.Test;
+import org.junit.jupiter.api.Test;
 
 public class OrderColumnTest {
 
@@ -1,6 +1,6 @@
 package com.tri.persistence.jpql;
 
-import static org.mockito.Matchers.eq;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -10,7 +10,7 @@ import java.util.Calendar;
 import javax.persistence.Query;
 import javax.persistence.TemporalType;
 
-import org.junit.Test;
+import org.junit.jupiter.api.Test;
 
 import com.tri.persistence.jpql.ParameterCalendar;
 
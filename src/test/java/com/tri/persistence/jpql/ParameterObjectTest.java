@@ -1,13 +1,13 @@
 package com.tri.persistence.jpql;
 
-import static org.mockito.Matchers.eq;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 import javax.persistence.Query;
 
-import org.junit.Test;
+import org.junit.jupiter.api.Test;
 
 import com.tri.persistence.jpql.ParameterObject;
 
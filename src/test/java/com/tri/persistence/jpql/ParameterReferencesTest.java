@@ -0,0 +1,75 @@
+package com.tri.persistence.jpql;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+
+import org.junit.jupiter.api.Test;
+
+public class ParameterReferencesTest {
+
+	@Test
+	public void scan() {
+		// test & check
+		assertThat(
+				ParameterReferences.scan("SELECT e FROM Entity e WHERE e.a=:a "
+						+ "AND e.b=?12 AND e.c=':x ?3' AND e.d='it''s :y' "
+						+ "AND e.e=:p_1")).containsOnly("a", 12, "p_1");
+	}
+
+	@Test
+	public void filter() {
+		// setup
+		final List<Parameter<?>> parameters = Arrays.<Parameter<?>> asList(
+				new ParameterObject("a", 1), new ParameterObject("b", 2),
+				new ParameterObject(3, 3));
+		// test & check
+		assertThat(
+				ParameterReferences.filter(parameters,
+						ParameterReferences.scan(":a ?3"))).extracting(
+				"value").containsExactly(1, 3);
+		assertThat(
+				ParameterReferences.filter(parameters,
+						ParameterReferences.scan(":a :b ?3"))).isSameAs(
+				parameters);
+	}
+
+	@Test
+	public void lastWriteWins() {
+		// setup
+		final QueryBuilder builder = new QueryBuilder();
+		// test
+		builder.setParameter("a", 1).setParameter("b", 2)
+				.setParameter("a", 3);
+		// check
+		assertThat(builder.getParameters()).extracting("value")
+				.containsExactly(3, 2);
+	}
+
+	@Test
+	public void createQueryDropsUnreferenced() {
+		// setup
+		final QueryBuilder builder = new QueryBuilder().select.add("e").from
+				.add("Entity e").setParameter("a", 1).setParameter("unused", 2);
+		builder.where.add("e.a=:a");
+		final EntityManager manager = mock(EntityManager.class);
+		final Query query = mock(Query.class);
+		when(manager.createQuery(builder.render())).thenReturn(query);
+		// test
+		builder.createQuery(manager);
+		// check
+		verify(query).setParameter("a", (Object) 1);
+		verify(query, never()).setParameter(eq("unused"), any());
+	}
+
+}
@@ -0,0 +1,124 @@
+package com.tri.persistence.jpql;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+public class PartitionedQueryTest {
+
+	private final QueryBuilder builder = new QueryBuilder().select.add("e").from
+			.add("Entity e");
+
+	private final ExecutorService executor = Executors.newFixedThreadPool(3);
+
+	@AfterEach
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	@Test
+	public void modulo() {
+		// test
+		final PartitionedQuery query = PartitionedQuery.modulo(builder,
+				"e.id", 3);
+		// check
+		assertThat(query.getPartitionCount()).isEqualTo(3);
+		assertThat(query.getPartitionQuery(2).render()).isEqualTo(
+				"SELECT e FROM Entity e WHERE (MOD(e.id, :p_1) = :p_2)");
+		assertThat(query.getPartitionQuery(2).getParameters())
+				.extracting("value").containsExactly(3, 2);
+		assertThat(builder.render()).isEqualTo("SELECT e FROM Entity e");
+	}
+
+	@Test
+	public void ranges() {
+		// test
+		final PartitionedQuery query = PartitionedQuery.ranges(builder,
+				"e.id", 0, 100, 200);
+		// check
+		assertThat(query.getPartitionCount()).isEqualTo(2);
+		assertThat(query.getPartitionQuery(1).render()).isEqualTo(
+				"SELECT e FROM Entity e WHERE (e.id >= :p_1 AND e.id < :p_2)");
+		assertThat(query.getPartitionQuery(1).getParameters())
+				.extracting("value").containsExactly(100L, 200L);
+		assertThatThrownBy(
+				() -> PartitionedQuery.ranges(builder, "e.id", 5, 5))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void getResultList() {
+		// setup
+		final EntityManager manager = mock(EntityManager.class);
+		final TypedQuery<String> eu = mock(TypedQuery.class);
+		final TypedQuery<String> us = mock(TypedQuery.class);
+		when(manager.createQuery(anyString(), eq(String.class))).thenAnswer(
+				invocation -> ((String) invocation.getArgument(0))
+						.contains("EU") ? eu : us);
+		when(eu.getResultList()).thenReturn(Arrays.asList("a", "b"));
+		when(us.getResultList()).thenReturn(Arrays.asList("c"));
+		final PartitionedQuery query = new PartitionedQuery(builder,
+				"e.region='EU'", "e.region='US'");
+		// test
+		final List<String> result = query.getResultList(() -> manager,
+				executor, String.class);
+		// check
+		assertThat(result).containsExactly("a", "b", "c");
+		verify(manager, times(2)).close();
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void forEachPartition() {
+		// setup
+		final EntityManager manager = mock(EntityManager.class);
+		final TypedQuery<String> typed = mock(TypedQuery.class);
+		when(manager.createQuery(anyString(), eq(String.class))).thenReturn(
+				typed);
+		when(typed.getResultList()).thenReturn(Arrays.asList("a"));
+		final List<List<String>> partitions = Collections
+				.synchronizedList(new ArrayList<List<String>>());
+		// test
+		PartitionedQuery.modulo(builder, "e.id", 4).forEachPartition(
+				() -> manager, executor, String.class, partitions::add);
+		// check
+		assertThat(partitions).hasSize(4);
+		verify(manager, times(4)).close();
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void failure() {
+		// setup
+		final EntityManager manager = mock(EntityManager.class);
+		final TypedQuery<String> typed = mock(TypedQuery.class);
+		when(manager.createQuery(anyString(), eq(String.class))).thenReturn(
+				typed);
+		when(typed.getResultList()).thenThrow(new IllegalStateException("x"));
+		// test & check
+		assertThatThrownBy(
+				() -> PartitionedQuery.modulo(builder, "e.id", 2)
+						.getResultList(() -> manager, executor, String.class))
+				.isInstanceOf(IllegalStateException.class).hasMessage("x");
+	}
+
+}
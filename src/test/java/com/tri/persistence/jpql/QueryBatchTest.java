@@ -0,0 +1,74 @@
+package com.tri.persistence.jpql;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+
+import org.junit.jupiter.api.Test;
+
+public class QueryBatchTest {
+
+	private QueryBuilder aggregate(final String expression, final int type) {
+		final QueryBuilder builder = new QueryBuilder().select.add(expression).from
+				.add("Entity e").setParameter("type", type);
+		builder.where.add("e.type=:type");
+		return builder;
+	}
+
+	@Test
+	public void fold() {
+		// setup
+		final QueryBatch batch = new QueryBatch();
+		batch.add(aggregate("COUNT(e)", 1));
+		batch.add(aggregate("MAX(e.id)", 1));
+		batch.add(aggregate("COUNT(e)", 2));
+		batch.add(aggregate("COUNT(e)", 1));
+		final EntityManager manager = mock(EntityManager.class);
+		final Query folded = mock(Query.class);
+		final Query single = mock(Query.class);
+		when(manager.createQuery(
+				"SELECT COUNT(e), MAX(e.id) FROM Entity e WHERE (e.type=:type)"))
+				.thenReturn(folded);
+		when(manager.createQuery(
+				"SELECT COUNT(e) FROM Entity e WHERE (e.type=:type)"))
+				.thenReturn(single);
+		when(folded.getSingleResult()).thenReturn(new Object[] { 10L, 99L });
+		when(single.getSingleResult()).thenReturn(5L);
+		// test
+		final List<Object> results = batch.getSingleResults(manager);
+		// check
+		assertThat(batch.getDistinctCount()).isEqualTo(3);
+		assertThat(results).containsExactly(10L, 99L, 5L, 10L);
+		verify(folded).setParameter("type", (Object) 1);
+		verify(single).setParameter("type", (Object) 2);
+	}
+
+	@Test
+	public void deduplicate() {
+		// setup
+		final QueryBatch batch = new QueryBatch();
+		final QueryBuilder builder = new QueryBuilder().select.add("e").from
+				.add("Entity e");
+		batch.add(builder);
+		batch.add(builder);
+		final EntityManager manager = mock(EntityManager.class);
+		final Query query = mock(Query.class);
+		when(manager.createQuery("SELECT e FROM Entity e")).thenReturn(query);
+		when(query.getResultList()).thenReturn(Arrays.asList("a"));
+		// test
+		final List<List<?>> results = batch.getResultLists(manager);
+		// check
+		assertThat(results).hasSize(2);
+		assertThat(results.get(1)).isEqualTo(Arrays.asList("a"));
+		verify(manager, times(1)).createQuery("SELECT e FROM Entity e");
+	}
+
+}
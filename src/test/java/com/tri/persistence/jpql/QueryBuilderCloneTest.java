@@ -0,0 +1,189 @@
+package com.tri.persistence.jpql;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+public class QueryBuilderCloneTest {
+
+	private static final String BASE = "SELECT e FROM Entity e WHERE (e.a=1 "
+			+ "AND (e.b=1 OR (e.c=1 AND e.d=1)) AND e.id IN (1, 2) "
+			+ "AND EXISTS (SELECT s FROM Sub s WHERE (s.x=1)))";
+
+	private QueryBuilder builder;
+
+	private WhereOr or;
+
+	private WhereAnd nested;
+
+	private QueryBuilder subquery;
+
+	private QueryBuilder createBuilder() {
+		builder = new QueryBuilder();
+		builder.select.add("e").from.add("Entity e").where.add("e.a=1");
+		or = builder.where.or();
+		or.add("e.b=1");
+		nested = or.and();
+		nested.add("e.c=1").add("e.d=1");
+		builder.where.in("e.id", Arrays.asList(1, 2));
+		subquery = builder.where.subquery("EXISTS");
+		subquery.select.add("s").from.add("Sub s").where.add("s.x=1");
+		builder.setParameter("p", 1);
+		return builder;
+	}
+
+	private QueryBuilder cloneOf(final QueryBuilder builder) {
+		try {
+			return (QueryBuilder) builder.clone();
+		} catch (CloneNotSupportedException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Test
+	public void cloneSharesStructure() {
+		// setup
+		createBuilder();
+		// test
+		final QueryBuilder clone = cloneOf(builder);
+		// check
+		assertThat(clone.render()).isEqualTo(BASE);
+		assertThat(clone.where.items).isSameAs(builder.where.items);
+		assertThat(clone.from.items).isSameAs(builder.from.items);
+		assertThat(clone.getParameters()).hasSize(1);
+	}
+
+	@Test
+	public void changeClone() {
+		// setup
+		createBuilder();
+		final QueryBuilder clone = cloneOf(builder);
+		// test
+		clone.select.add("s");
+		clone.from.add("Other o");
+		clone.where.add("e.z=1");
+		clone.update.set("Entity e");
+		clone.setParameter("q", 2);
+		// check
+		assertThat(builder.render()).isEqualTo(BASE);
+		assertThat(builder.getParameters()).hasSize(1);
+		assertThat(clone.getParameters()).hasSize(2);
+		assertThat(clone.render()).contains("SELECT e, s").contains(
+				"FROM Entity e, Other o").endsWith(" AND e.z=1)");
+	}
+
+	@Test
+	public void changeOriginalByReference() {
+		// setup
+		createBuilder();
+		final QueryBuilder clone = cloneOf(builder);
+		// test
+		builder.where.add("e.z=1");
+		or.add("e.y=1");
+		nested.add("e.x=1");
+		subquery.where.add("s.y=1");
+		subquery.from.add("Other o");
+		// check
+		assertThat(clone.render()).isEqualTo(BASE);
+		assertThat(builder.render()).isEqualTo(
+				"SELECT e FROM Entity e WHERE (e.a=1 AND (e.b=1 "
+						+ "OR (e.c=1 AND e.d=1 AND e.x=1) OR e.y=1) "
+						+ "AND e.id IN (1, 2) AND EXISTS (SELECT s "
+						+ "FROM Sub s, Other o WHERE (s.x=1 AND s.y=1))"
+						+ " AND e.z=1)");
+	}
+
+	@Test
+	public void changeOriginalByReferenceAfterCloneChanged() {
+		// setup
+		createBuilder();
+		final QueryBuilder clone = cloneOf(builder);
+		clone.where.add("e.z=1");
+		// test
+		nested.add("e.x=1");
+		subquery.where.add("s.y=1");
+		// check
+		assertThat(clone.render()).isEqualTo(
+				BASE.substring(0, BASE.length() - 1) + " AND e.z=1)");
+		assertThat(builder.render()).contains("(e.c=1 AND e.d=1 AND e.x=1)")
+				.contains("(s.x=1 AND s.y=1)");
+	}
+
+	@Test
+	public void changeCloneOfClone() {
+		// setup
+		createBuilder();
+		final QueryBuilder clone1 = cloneOf(builder);
+		final QueryBuilder clone2 = cloneOf(clone1);
+		// test
+		clone1.where.add("e.y=1");
+		clone2.where.add("e.z=1");
+		nested.add("e.x=1");
+		// check
+		assertThat(clone1.render()).isEqualTo(
+				BASE.substring(0, BASE.length() - 1) + " AND e.y=1)");
+		assertThat(clone2.render()).isEqualTo(
+				BASE.substring(0, BASE.length() - 1) + " AND e.z=1)");
+		assertThat(builder.render()).contains("(e.c=1 AND e.d=1 AND e.x=1)")
+				.doesNotContain("e.y=1").doesNotContain("e.z=1");
+	}
+
+	@Test
+	public void changeSeveralClones() {
+		// setup
+		createBuilder();
+		final QueryBuilder clone1 = cloneOf(builder);
+		final QueryBuilder clone2 = cloneOf(builder);
+		// test
+		or.add("e.y=1");
+		clone1.where.add("e.z=1");
+		// check
+		assertThat(clone2.render()).isEqualTo(BASE);
+		assertThat(clone1.render()).isEqualTo(
+				BASE.substring(0, BASE.length() - 1) + " AND e.z=1)");
+		assertThat(builder.render()).contains(" OR e.y=1)");
+	}
+
+	@Test
+	public void cloneParametersOfSubquery() {
+		// setup
+		createBuilder();
+		final QueryBuilder clone = cloneOf(builder);
+		// test
+		subquery.where.in("s.id", Arrays.asList(1), InOptions.PARAMETER);
+		// check
+		assertThat(builder.getParameters()).hasSize(2);
+		assertThat(clone.getParameters()).hasSize(1);
+		assertThat(clone.render()).isEqualTo(BASE);
+	}
+
+	@Test
+	public void normalizeClone() {
+		// setup
+		final QueryBuilder original = new QueryBuilder().select.add("e").from
+				.add("Entity e");
+		original.where.or().in("e.x", Arrays.asList(1), InOptions.PARAMETER)
+				.in("e.x", Arrays.asList(2), InOptions.PARAMETER);
+		final QueryBuilder sub = original.where.subquery("EXISTS");
+		sub.select.add("s").from.add("Sub s").where.or()
+				.in("s.y", Arrays.asList(3), InOptions.PARAMETER)
+				.in("s.y", Arrays.asList(4), InOptions.PARAMETER);
+		final String rendered = original.render();
+		final QueryBuilder clone = cloneOf(original);
+		// test
+		clone.where.add("e.b=1");
+		clone.normalize();
+		// check
+		assertThat(original.render()).isEqualTo(rendered);
+		assertThat(original.getParameters()).extracting("name")
+				.containsExactly("p_1", "p_2", "p_3", "p_4");
+		assertThat(clone.render()).isEqualTo(
+				"SELECT e FROM Entity e WHERE (e.x IN :p_5 AND EXISTS "
+						+ "(SELECT s FROM Sub s WHERE (s.y IN :p_6)) AND e.b=1)");
+		assertThat(clone.getParameters()).extracting("name").containsExactly(
+				"p_1", "p_2", "p_3", "p_4", "p_5", "p_6");
+	}
+
+}
@@ -0,0 +1,82 @@
+package com.tri.persistence.jpql;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.Test;
+
+public class QueryBuilderCountTest {
+
+	private QueryBuilder createBuilder(final String select) {
+		final QueryBuilder builder = new QueryBuilder().select.add(select).from
+				.add("Entity e").order.add("e.name").setParameter("a", 1);
+		builder.where.add("e.a=:a");
+		builder.where.subquery("EXISTS").select.add("s").from.add("Sub s");
+		return builder;
+	}
+
+	@Test
+	public void count() {
+		// setup
+		final QueryBuilder builder = createBuilder("e");
+		// test
+		final QueryBuilder count = builder.count();
+		// check
+		assertThat(count.render()).isEqualTo(
+				"SELECT COUNT(e) FROM Entity e WHERE (e.a=:a "
+						+ "AND EXISTS (SELECT s FROM Sub s))");
+		assertThat(count.getParameters()).hasSize(1);
+		assertThat(builder.render()).isEqualTo(
+				"SELECT e FROM Entity e WHERE (e.a=:a "
+						+ "AND EXISTS (SELECT s FROM Sub s)) ORDER BY e.name");
+	}
+
+	@Test
+	public void countDistinct() {
+		// test & check
+		assertThat(createBuilder("distinct e.type").count().render())
+				.startsWith("SELECT COUNT(DISTINCT e.type) FROM Entity e");
+		assertThat(createBuilder("e").countDistinct("e.id").render())
+				.startsWith("SELECT COUNT(DISTINCT e.id) FROM Entity e");
+	}
+
+	@Test
+	public void countRequiresSingleItem() {
+		// setup
+		final QueryBuilder builder = createBuilder("e.id");
+		builder.select.add("e.name");
+		// test & check
+		assertThatThrownBy(() -> builder.count()).isInstanceOf(
+				IllegalStateException.class);
+		assertThat(builder.count("e").render()).startsWith(
+				"SELECT COUNT(e) FROM Entity e");
+	}
+
+	@Test
+	public void countRejectsConstructorExpression() {
+		// setup
+		final QueryBuilder builder = createBuilder("NEW com.example.Dto(e.id)");
+		final QueryBuilder distinct = createBuilder("DISTINCT new com.example.Dto(e.id)");
+		// test & check
+		assertThatThrownBy(() -> builder.count()).isInstanceOf(
+				IllegalStateException.class).hasMessageContaining(
+				"count(String)");
+		assertThatThrownBy(() -> distinct.count()).isInstanceOf(
+				IllegalStateException.class);
+		assertThat(builder.count("e").render()).startsWith(
+				"SELECT COUNT(e) FROM Entity e");
+	}
+
+	@Test
+	public void countUsesRenderCache() {
+		// setup
+		final RenderCache cache = new RenderCache(8);
+		final QueryBuilder builder = createBuilder("e").setRenderCache(cache);
+		// test
+		builder.count().render();
+		builder.count().render();
+		// check
+		assertThat(cache.getHits()).isEqualTo(1);
+	}
+
+}
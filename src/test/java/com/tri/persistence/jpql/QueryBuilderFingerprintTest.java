@@ -0,0 +1,92 @@
+package com.tri.persistence.jpql;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+public class QueryBuilderFingerprintTest {
+
+	private QueryBuilder createBuilder(final Object value, final Integer... in) {
+		final QueryBuilder builder = new QueryBuilder().select.add("e").from
+				.add("Entity e").setParameter("a", value);
+		builder.where.add("e.a=:a").or().add("e.b=1").add("e.c=2");
+		builder.where.in("e.d", Arrays.asList(in));
+		builder.where.in("e.e", Arrays.asList(in), InOptions.PARAMETER);
+		builder.where.subquery("EXISTS").select.add("s").from.add("Sub s");
+		return builder;
+	}
+
+	@Test
+	public void ignoresValues() {
+		// test & check
+		assertThat(createBuilder(1, 1, 2, 3).fingerprint()).isEqualTo(
+				createBuilder("x", 4).fingerprint());
+	}
+
+	@Test
+	public void structure() {
+		// setup
+		final long fingerprint = createBuilder(1, 1).fingerprint();
+		// test & check
+		assertThat(createBuilder(1, 1).order.add("e.a").fingerprint())
+				.isNotEqualTo(fingerprint);
+		final QueryBuilder predicate = createBuilder(1, 1);
+		predicate.where.add("e.f=1");
+		assertThat(predicate.fingerprint()).isNotEqualTo(fingerprint);
+		final QueryBuilder swapped = new QueryBuilder().select.add("Entity e").from
+				.add("e");
+		assertThat(swapped.fingerprint()).isNotEqualTo(
+				new QueryBuilder().select.add("e").from.add("Entity e")
+						.fingerprint());
+	}
+
+	@Test
+	public void nestedChanges() {
+		// setup
+		final QueryBuilder expected = createBuilder(1, 1);
+		expected.where.and().add("e.g=1").subquery("EXISTS").from
+				.add("Other o");
+		final QueryBuilder builder = createBuilder(1, 1);
+		final WhereAnd and = builder.where.and();
+		// test
+		final QueryBuilder subquery = and.add("e.g=1").subquery("EXISTS");
+		final long partial = builder.fingerprint();
+		subquery.from.add("Other o");
+		// check
+		assertThat(partial).isNotEqualTo(builder.fingerprint());
+		assertThat(builder.fingerprint()).isEqualTo(expected.fingerprint());
+	}
+
+	@Test
+	public void cloned() throws Exception {
+		// setup
+		final QueryBuilder builder = createBuilder(1, 1);
+		final long fingerprint = builder.fingerprint();
+		// test
+		final QueryBuilder clone = (QueryBuilder) builder.clone();
+		clone.where.add("e.f=1");
+		// check
+		assertThat(builder.fingerprint()).isEqualTo(fingerprint);
+		final QueryBuilder expected = createBuilder(1, 1);
+		expected.where.add("e.f=1");
+		assertThat(clone.fingerprint()).isEqualTo(expected.fingerprint());
+	}
+
+	@Test
+	public void normalize() {
+		// setup
+		final QueryBuilder builder = new QueryBuilder().select.add("e").from
+				.add("Entity e");
+		builder.where.and().add("e.a=1").and().add("e.b=1");
+		final QueryBuilder expected = new QueryBuilder().select.add("e").from
+				.add("Entity e");
+		expected.where.add("e.a=1").add("e.b=1");
+		// test
+		builder.normalize();
+		// check
+		assertThat(builder.fingerprint()).isEqualTo(expected.fingerprint());
+	}
+
+}
@@ -1,8 +1,20 @@
 package com.tri.persistence.jpql;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
-import org.junit.Test;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+
+import org.junit.jupiter.api.Test;
 
 public class QueryBuilderTest {
 
@@ -135,6 +147,40 @@ public class QueryBuilderTest {
 						+ ENUMTEST.B.name() + "))");
 	}
 
+	@Test
+	public void renderSkipsBlankItems() {
+		// setup
+		QueryBuilder builder = new QueryBuilder();
+		builder.select.add("field");
+		builder.from.add("column");
+		builder.where.and();
+		builder.where.add("field=1");
+		builder.where.or().add(" ").and();
+		builder.where.or().add("field=2").notIn("field", 3, 4);
+		// test, check
+		assertThat(builder.render()).isEqualTo(
+				"SELECT field FROM column WHERE (field=1 "
+						+ "AND (field=2 OR field NOT IN (3, 4)))");
+	}
+
+	@Test
+	public void renderIntoBuffer() {
+		// setup
+		QueryBuilder builder = new QueryBuilder();
+		builder.select.add("field").from.add("column").where
+				.subquery("field IN").select.add("subfield").from
+				.add("subcolumn");
+		final StringBuilder buffer = new StringBuilder("prefix ");
+		// test
+		builder.render(buffer);
+		// check
+		assertThat(buffer.toString()).isEqualTo(
+				"prefix SELECT field FROM column WHERE (field IN "
+						+ "(SELECT subfield FROM subcolumn))");
+		assertThat(builder.render()).isEqualTo(
+				buffer.substring("prefix ".length()));
+	}
+
 	@Test
 	public void cloneSelectBuilder() throws CloneNotSupportedException {
 		// setup
@@ -152,6 +198,22 @@ public class QueryBuilderTest {
 						+ "ORDER BY field2");
 	}
 
+	@Test
+	public void cloneIsAssociatedWithClone() throws CloneNotSupportedException {
+		// setup
+		QueryBuilder builder = new QueryBuilder();
+		builder.select.add("e").from.add("Entity e");
+		// test
+		final QueryBuilder clone = (QueryBuilder) builder.clone();
+		clone.where.in("e.id", Arrays.asList(1),
+				InOptions.PARAMETER);
+		// check
+		assertThat(clone.from.add("Other o")).isSameAs(clone);
+		assertThat(clone.getParameters()).hasSize(1);
+		assertThat(builder.getParameters()).isEmpty();
+		assertThat(builder.render()).isEqualTo("SELECT e FROM Entity e");
+	}
+
 	@Test
 	public void cloneUpdateBuilder() throws CloneNotSupportedException {
 		// setup
@@ -205,6 +267,152 @@ public class QueryBuilderTest {
 				"DELETE FROM Entity e WHERE (e.field2='content2')");
 	}
 
+	@Test
+	@SuppressWarnings("unchecked")
+	public void stream() {
+		// setup
+		final QueryBuilder builder = new QueryBuilder().select.add("e").from
+				.add("Entity e").setParameter("a", 1);
+		builder.where.add("e.a=:a");
+		final EntityManager manager = mock(EntityManager.class);
+		final TypedQuery<String> query = mock(TypedQuery.class);
+		final Stream<String> stream = Stream.of("x");
+		when(manager.createQuery(builder.render(), String.class)).thenReturn(
+				query);
+		when(query.getResultStream()).thenReturn(stream);
+		// test
+		final Stream<String> result = builder.stream(manager, String.class,
+				100);
+		// check
+		assertThat(result).isSameAs(stream);
+		verify(query).setParameter(eq("a"), eq((Object) 1));
+		verify(query).setHint(QueryBuilder.HINT_FETCH_SIZE_HIBERNATE, 100);
+		verify(query).setHint(QueryBuilder.HINT_FETCH_SIZE_ECLIPSELINK, 100);
+	}
+
+	@Test
+	public void renderAfterChange() throws Exception {
+		// setup
+		final QueryBuilder builder = new QueryBuilder().select.add("e").from
+				.add("Entity e");
+		final WhereOr or = builder.where.in("e.a", 1, 2).or();
+		or.add("e.b=1");
+		final QueryBuilder subquery = builder.where.subquery("EXISTS");
+		subquery.select.add("s").from.add("Sub s");
+		builder.render();
+		final QueryBuilder clone = (QueryBuilder) builder.clone();
+		// test
+		or.add("e.b=2");
+		subquery.where.add("s.e=e");
+		builder.order.add("e.a");
+		// check
+		assertThat(builder.render()).isEqualTo(
+				"SELECT e FROM Entity e WHERE (e.a IN (1, 2) "
+						+ "AND (e.b=1 OR e.b=2) "
+						+ "AND EXISTS (SELECT s FROM Sub s WHERE (s.e=e))) "
+						+ "ORDER BY e.a");
+		assertThat(clone.render()).isEqualTo(
+				"SELECT e FROM Entity e WHERE (e.a IN (1, 2) AND (e.b=1) "
+						+ "AND EXISTS (SELECT s FROM Sub s))");
+	}
+
+	@Test
+	public void renderLargeAfterChange() {
+		// setup
+		final List<Integer> values = new ArrayList<Integer>();
+		for (int i = 0; i < 500; i++) {
+			values.add(i);
+		}
+		final QueryBuilder builder = new QueryBuilder().select.add("e").from
+				.add("Entity e");
+		final WhereOr or = builder.where.or();
+		or.in("e.a", values);
+		final String before = builder.render();
+		// test
+		or.add("e.b=1");
+		// check
+		assertThat(before.length()).isGreaterThan(WhereItems.MEMO_LENGTH);
+		assertThat(builder.render()).isEqualTo(
+				before.substring(0, before.length() - 2) + " OR e.b=1))");
+	}
+
+	@Test
+	public void renderCustomItemAfterChange() {
+		// setup
+		final int[] n = { 0 };
+		final QueryBuilder builder = new QueryBuilder().select.add("e").from
+				.add("Entity e");
+		final WhereItem custom = new WhereItem(builder) {
+
+			@Override
+			public String render() {
+				return "e.n=" + n[0];
+			}
+
+		};
+		builder.where.or().add("e.a=1").add(custom);
+		builder.render();
+		// test
+		n[0] = 1;
+		// check
+		assertThat(builder.render()).isEqualTo(
+				"SELECT e FROM Entity e WHERE ((e.a=1 OR e.n=1))");
+	}
+
+	@Test
+	public void length() {
+		// setup
+		final QueryBuilder builder = new QueryBuilder().select.add("e").from
+				.add("Entity e").order.add("e.a");
+		final WhereOr or = builder.where.add("e.b=:b").or();
+		builder.where.in("e.c", Arrays.asList(1L, -20L, 300L));
+		builder.where.in("e.d", Arrays.asList("x", "y"), InOptions.PARAMETER);
+		or.add("e.e=1").add("e.f=2");
+		// test
+		final int length = builder.length();
+		// check
+		final int rendered = builder.render().length();
+		assertThat(length).isBetween(rendered, rendered + 64);
+		// operators are estimated as " AND "
+		assertThat(builder.where.length()).isEqualTo(
+				builder.where.render().length() + 1);
+	}
+
+	@Test
+	public void subqueryRenamesGeneratedParameters() {
+		// setup
+		final QueryBuilder builder = new QueryBuilder().select.add("e").from
+				.add("Entity e");
+		builder.where.in("e.a", Arrays.asList(1), InOptions.PARAMETER)
+				.in("e.b", Arrays.asList(2), InOptions.PARAMETER)
+				.in("e.c", Arrays.asList(3), InOptions.PARAMETER);
+		final QueryBuilder subquery = new QueryBuilder().select.add("s").from
+				.add("Sub s").setParameter("p_2", 7);
+		subquery.where.in("s.id", Arrays.asList(4), InOptions.PARAMETER).add(
+				"s.v = :p_2 AND s.w <> ':p_2'");
+		subquery.where.subquery("EXISTS").select.add("t").from.add("T t").where
+				.in("t.id", Arrays.asList(5), InOptions.PARAMETER);
+		// test
+		builder.where.subquery("EXISTS", subquery);
+		// check
+		assertThat(builder.render()).isEqualTo(
+				"SELECT e FROM Entity e WHERE (e.a IN :p_1 AND e.b IN :p_2 "
+						+ "AND e.c IN :p_3 AND EXISTS (SELECT s FROM Sub s "
+						+ "WHERE (s.id IN :p_5 AND s.v = :p_4 AND s.w <> ':p_2' "
+						+ "AND EXISTS (SELECT t FROM T t WHERE (t.id IN :p_6)))))");
+		assertThat(builder.getParameters()).extracting("name").containsExactly(
+				"p_1", "p_2", "p_3", "p_4", "p_5", "p_6");
+		assertThat(builder.getParameters()).extracting("value").containsExactly(
+				Arrays.asList(1), Arrays.asList(2), Arrays.asList(3),
+				7, Arrays.asList(4), Arrays.asList(5));
+		assertThat(builder.length()).isGreaterThanOrEqualTo(
+				builder.render().length());
+		assertThat(subquery.render()).isEqualTo(
+				"SELECT s FROM Sub s WHERE (s.id IN :p_1 AND s.v = :p_2 "
+						+ "AND s.w <> ':p_2' AND EXISTS (SELECT t FROM T t "
+						+ "WHERE (t.id IN :p_3)))");
+	}
+
 	/**
 	 * Test class for constructor expression test in testBuild().
 	 */
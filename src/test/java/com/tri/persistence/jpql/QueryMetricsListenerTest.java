@@ -0,0 +1,131 @@
+package com.tri.persistence.jpql;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+
+import org.junit.jupiter.api.Test;
+
+public class QueryMetricsListenerTest {
+
+	private final List<RenderMetrics> rendered = new ArrayList<RenderMetrics>();
+
+	private final List<Integer> created = new ArrayList<Integer>();
+
+	private final List<Object> contexts = new ArrayList<Object>();
+
+	private int cloned;
+
+	private final QueryMetricsListener listener = new QueryMetricsListener() {
+
+		@Override
+		public Object renderStarted() {
+			return "render";
+		}
+
+		@Override
+		public void rendered(final RenderMetrics metrics, final Object context) {
+			rendered.add(metrics);
+			contexts.add(context);
+		}
+
+		@Override
+		public Object queryCreationStarted() {
+			return "create";
+		}
+
+		@Override
+		public void cloned(final long nanos) {
+			cloned++;
+		}
+
+		@Override
+		public void queryCreated(final RenderMetrics metrics,
+				final long nanos, final int parameterCount, final Object context) {
+			created.add(parameterCount);
+			contexts.add(context);
+		}
+
+	};
+
+	private QueryBuilder createBuilder() {
+		final QueryBuilder builder = new QueryBuilder().select.add("e").from
+				.add("Entity e").setParameter("a", 1)
+				.setMetricsListener(listener);
+		builder.where.add("e.a=:a").or().add("e.b=1")
+				.in("e.c", Arrays.asList(1, 2, 3));
+		builder.where.subquery("EXISTS").select.add("s").from.add("Sub s").where
+				.in("s.d", Arrays.asList(1));
+		return builder;
+	}
+
+	@Test
+	public void rendered() {
+		// setup
+		final QueryBuilder builder = createBuilder();
+		// test
+		final String query = builder.render();
+		// check
+		assertThat(rendered).hasSize(1);
+		final RenderMetrics metrics = rendered.get(0);
+		assertThat(metrics.getQuery()).isEqualTo(query);
+		assertThat(metrics.getLength()).isEqualTo(query.length());
+		assertThat(metrics.getCacheHit()).isNull();
+		assertThat(metrics.getParameterCount()).isEqualTo(1);
+		assertThat(metrics.getWhereDepth()).isEqualTo(4);
+		assertThat(metrics.getWhereNodeCount()).isEqualTo(8);
+		assertThat(metrics.getInCount()).isEqualTo(2);
+		assertThat(metrics.getInValueCount()).isEqualTo(4);
+		assertThat(metrics.getMaxInSize()).isEqualTo(3);
+		assertThat(contexts).containsExactly("render");
+	}
+
+	@Test
+	public void cloneInheritsListener() throws CloneNotSupportedException {
+		// setup
+		final QueryBuilder builder = createBuilder().setRenderCache(
+				new RenderCache(4));
+		// test
+		final QueryBuilder clone = (QueryBuilder) builder.clone();
+		builder.render();
+		clone.render();
+		// check
+		assertThat(cloned).isEqualTo(1);
+		assertThat(rendered).extracting("cacheHit").containsExactly(false,
+				true);
+	}
+
+	@Test
+	public void queryCreated() {
+		// setup
+		final QueryBuilder builder = createBuilder().setParameter("unused", 2);
+		final EntityManager manager = mock(EntityManager.class);
+		when(manager.createQuery(builder.render())).thenReturn(
+				mock(Query.class));
+		// test
+		builder.createQuery(manager);
+		// check
+		assertThat(created).containsExactly(1);
+		assertThat(contexts).containsExactly("render", "render", "create");
+	}
+
+	@Test
+	public void noListener() {
+		// setup
+		final QueryBuilder builder = createBuilder().setMetricsListener(null);
+		// test
+		builder.render();
+		// check
+		assertThat(builder.getMetricsListener()).isSameAs(
+				QueryMetricsListener.NONE);
+		assertThat(rendered).isEmpty();
+	}
+
+}
@@ -0,0 +1,122 @@
+package com.tri.persistence.jpql;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Date;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import javax.persistence.TemporalType;
+import javax.persistence.TypedQuery;
+
+import org.junit.jupiter.api.Test;
+
+public class QueryTemplateTest {
+
+	private QueryTemplate createTemplate() {
+		final QueryBuilder builder = new QueryBuilder().select.add("e").from
+				.add("Entity e").where.add("e.name=:name")
+				.add("e.created>:created").add("e.type=?1").builder();
+		builder.setParameter("name", "n1");
+		builder.setParameter("created", new Date(1), TemporalType.DATE);
+		builder.setParameter(new ParameterObject(1, "t1"));
+		return builder.compile();
+	}
+
+	@Test
+	public void compile() {
+		// setup, test
+		final QueryTemplate template = createTemplate();
+		// check
+		assertThat(template.getQuery()).isEqualTo(
+				"SELECT e FROM Entity e WHERE (e.name=:name "
+						+ "AND e.created>:created AND e.type=?1)");
+		assertThat(template.getParameterCount()).isEqualTo(3);
+		assertThat(template.indexOf("created")).isEqualTo(1);
+		assertThat(template.indexOf("unknown")).isEqualTo(-1);
+	}
+
+	@Test
+	public void compileDropsUnreferenced() {
+		// setup
+		final QueryBuilder builder = new QueryBuilder().select.add("e").from
+				.add("Entity e").setParameter("a", 1).setParameter("b", 2);
+		builder.where.add("e.b=:b");
+		// test
+		final QueryTemplate template = builder.compile();
+		// check
+		assertThat(template.getParameterCount()).isEqualTo(1);
+		assertThat(template.indexOf("a")).isEqualTo(-1);
+		assertThat(template.indexOf("b")).isEqualTo(0);
+	}
+
+	@Test
+	public void parameterListChangesDropBindingPlan() {
+		// setup
+		final QueryBuilder builder = new QueryBuilder().select.add("e").from
+				.add("Entity e").setParameter("a", 1);
+		builder.where.add("e.a=:a").add("e.b=:b");
+		final List<Parameter<?>> parameters = builder.getParameters();
+		final EntityManager manager = mock(EntityManager.class);
+		final Query query = mock(Query.class);
+		when(manager.createQuery(builder.render())).thenReturn(query);
+		builder.createQuery(manager);
+		// test
+		parameters.add(new ParameterObject("b", 2));
+		builder.createQuery(manager);
+		// check
+		verify(query).setParameter("b", 2);
+		assertThat(builder.getParameters()).hasSize(2);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void createQueryWithValues() {
+		// setup
+		final QueryTemplate template = createTemplate();
+		final EntityManager manager = mock(EntityManager.class);
+		final TypedQuery<String> query = mock(TypedQuery.class);
+		when(manager.createQuery(template.getQuery(), String.class))
+				.thenReturn(query);
+		final Date created = new Date(2);
+		// test
+		template.createQuery(manager, String.class, "n2", created, "t2");
+		// check
+		verify(query).setParameter(eq("name"), eq((Object) "n2"));
+		verify(query).setParameter(eq("created"), eq(created),
+				eq(TemporalType.DATE));
+		verify(query).setParameter(eq(1), eq((Object) "t2"));
+	}
+
+	@Test
+	public void createQueryWithCompiledValues() {
+		// setup
+		final QueryTemplate template = createTemplate();
+		final EntityManager manager = mock(EntityManager.class);
+		final Query query = mock(Query.class);
+		when(manager.createQuery(template.getQuery())).thenReturn(query);
+		// test
+		template.createQuery(manager);
+		// check
+		verify(query).setParameter(eq("name"), eq((Object) "n1"));
+		verify(query).setParameter(eq("created"), eq(new Date(1)),
+				eq(TemporalType.DATE));
+		verify(query).setParameter(eq(1), eq((Object) "t1"));
+	}
+
+	@Test
+	public void bindRequiresValuePerSlot() {
+		// setup
+		final QueryTemplate template = createTemplate();
+		// test, check
+		assertThatThrownBy(() -> template.bind(mock(Query.class), "n2"))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+}
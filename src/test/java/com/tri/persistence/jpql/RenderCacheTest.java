@@ -0,0 +1,84 @@
+package com.tri.persistence.jpql;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+public class RenderCacheTest {
+
+	private QueryBuilder createBuilder(final RenderCache cache,
+			final Integer... values) {
+		final QueryBuilder builder = new QueryBuilder().setRenderCache(cache);
+		builder.select.add("e").from.add("Entity e").where
+				.add("e.name=:name").or().add("e.flag=true")
+				.in("e.id", values);
+		builder.where.subquery("e.parent IN").select.add("p").from
+				.add("Parent p");
+		return builder;
+	}
+
+	@Test
+	public void renderHit() {
+		// setup
+		final RenderCache cache = new RenderCache(10);
+		final String expected = createBuilder(null, 1, 2).render();
+		// test
+		final String first = createBuilder(cache, 1, 2).render();
+		final String second = createBuilder(cache, 1, 2).render();
+		// check
+		assertThat(first).isEqualTo(expected);
+		assertThat(second).isSameAs(first);
+		assertThat(cache.getMisses()).isEqualTo(1);
+		assertThat(cache.getHits()).isEqualTo(1);
+		assertThat(cache.size()).isEqualTo(1);
+	}
+
+	@Test
+	public void renderMissOnDifferentShape() {
+		// setup
+		final RenderCache cache = new RenderCache(10);
+		final QueryBuilder builder = createBuilder(cache, 1, 2);
+		builder.render();
+		// test
+		builder.where.add("e.deleted=false");
+		final String second = builder.render();
+		final String third = createBuilder(cache, 1, 3).render();
+		// check
+		assertThat(second).endsWith(" AND e.deleted=false)");
+		assertThat(third).contains("e.id IN (1, 3)");
+		assertThat(cache.getMisses()).isEqualTo(3);
+		assertThat(cache.getHits()).isEqualTo(0);
+	}
+
+	@Test
+	public void evictLeastRecentlyUsed() {
+		// setup
+		final RenderCache cache = new RenderCache(2);
+		createBuilder(cache, 1).render();
+		createBuilder(cache, 2).render();
+		createBuilder(cache, 1).render();
+		// test
+		createBuilder(cache, 3).render();
+		createBuilder(cache, 1).render();
+		createBuilder(cache, 2).render();
+		// check
+		assertThat(cache.size()).isEqualTo(2);
+		assertThat(cache.getHits()).isEqualTo(2);
+		assertThat(cache.getMisses()).isEqualTo(4);
+	}
+
+	@Test
+	public void cloneSharesCache() throws CloneNotSupportedException {
+		// setup
+		final RenderCache cache = new RenderCache(10);
+		final QueryBuilder builder = createBuilder(cache, 1);
+		builder.render();
+		// test
+		final QueryBuilder clone = (QueryBuilder) builder.clone();
+		clone.render();
+		// check
+		assertThat(clone.getRenderCache()).isSameAs(cache);
+		assertThat(cache.getHits()).isEqualTo(1);
+	}
+
+}
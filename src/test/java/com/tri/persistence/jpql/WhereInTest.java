@@ -0,0 +1,215 @@
+package com.tri.persistence.jpql;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+public class WhereInTest {
+
+	@Test
+	public void renderParameter() {
+		// setup
+		QueryBuilder builder = new QueryBuilder();
+		builder.select.add("e").from.add("Entity e");
+		builder.where.in("e.id", Arrays.asList(1, 2, 3), InOptions.PARAMETER)
+				.notIn("e.type", Arrays.asList("A"), InOptions.PARAMETER);
+		// test, check
+		assertThat(builder.render()).isEqualTo(
+				"SELECT e FROM Entity e WHERE (e.id IN :p_1 "
+						+ "AND e.type NOT IN :p_2)");
+		assertThat(builder.getParameters()).hasSize(2);
+		assertThat(builder.getParameters().get(0).name).isEqualTo("p_1");
+		assertThat(builder.getParameters().get(0).value).isEqualTo(
+				Arrays.asList(1, 2, 3));
+	}
+
+	@Test
+	public void renderParameterEqualForAllValues() {
+		// setup
+		QueryBuilder builder1 = new QueryBuilder();
+		builder1.where.in("e.id", Arrays.asList(1, 2), InOptions.PARAMETER);
+		QueryBuilder builder2 = new QueryBuilder();
+		builder2.where.in("e.id", Arrays.asList(3, 4, 5), InOptions.PARAMETER);
+		// test, check
+		assertThat(builder1.render()).isEqualTo(builder2.render());
+		assertThat(builder1.shape()).isEqualTo(builder2.shape());
+	}
+
+	@Test
+	public void parameterNameCollisionFree() {
+		// setup
+		QueryBuilder builder = new QueryBuilder();
+		builder.setParameter("p_1", "x");
+		// test
+		builder.where.add("e.name=:p_1").in("e.id", Arrays.asList(1),
+				InOptions.PARAMETER);
+		// check
+		assertThat(builder.where.render()).isEqualTo(
+				"(e.name=:p_1 AND e.id IN :p_2)");
+	}
+
+	@Test
+	public void subqueryParameterAddedToParent() {
+		// setup
+		QueryBuilder builder = new QueryBuilder();
+		builder.where.in("e.id", Arrays.asList(1), InOptions.PARAMETER);
+		// test
+		builder.where.subquery("EXISTS").where.in("s.id", Arrays.asList(2),
+				InOptions.PARAMETER);
+		// check
+		assertThat(builder.where.render()).isEqualTo(
+				"(e.id IN :p_1 AND EXISTS ( WHERE (s.id IN :p_2)))");
+		assertThat(builder.getParameters()).hasSize(2);
+	}
+
+	@Test
+	public void renderPadded() {
+		// setup
+		QueryBuilder builder = new QueryBuilder();
+		// test
+		builder.where.in("e.id", Arrays.asList(1, 2, 3),
+				InOptions.LITERAL.withPadding(InPadding.POWER_OF_TWO));
+		// check
+		assertThat(builder.where.render()).isEqualTo("(e.id IN (1, 2, 3, 3))");
+	}
+
+	@Test
+	public void bindPadded() {
+		// setup
+		QueryBuilder builder = new QueryBuilder();
+		// test
+		builder.where.in("e.id", Arrays.asList(1, 2, 3, 4, 5),
+				InOptions.PARAMETER.withPadding(new InPadding(4, 8)));
+		// check
+		assertThat(builder.getParameters().get(0).value).isEqualTo(
+				Arrays.asList(1, 2, 3, 4, 5, 5, 5, 5));
+	}
+
+	@Test
+	public void renderChunked() {
+		// setup
+		QueryBuilder builder = new QueryBuilder();
+		// test
+		builder.where.in("e.id", Arrays.asList(1, 2, 3, 4, 5),
+				InOptions.LITERAL.withChunkSize(2)).notIn("e.type",
+				Arrays.asList(6, 7), InOptions.LITERAL.withChunkSize(1));
+		// check
+		assertThat(builder.where.render()).isEqualTo(
+				"((e.id IN (1, 2) OR e.id IN (3, 4) OR e.id IN (5)) "
+						+ "AND (e.type NOT IN (6) AND e.type NOT IN (7)))");
+	}
+
+	@Test
+	public void renderChunkedSingleChunk() {
+		// setup
+		QueryBuilder builder = new QueryBuilder();
+		// test
+		builder.where.in("e.id", Arrays.asList(1, 2),
+				InOptions.LITERAL.withChunkSize(2));
+		// check
+		assertThat(builder.where.render()).isEqualTo("(e.id IN (1, 2))");
+	}
+
+	@Test
+	public void bindChunkedPadded() {
+		// setup
+		QueryBuilder builder = new QueryBuilder();
+		// test
+		builder.where.in("e.id", Arrays.asList(1, 2, 3, 4, 5), InOptions.PARAMETER
+				.withChunkSize(3).withPadding(InPadding.POWER_OF_TWO));
+		// check
+		assertThat(builder.where.render()).isEqualTo(
+				"((e.id IN :p_1 OR e.id IN :p_2))");
+		assertThat(builder.getParameters().get(0).value).isEqualTo(
+				Arrays.asList(1, 2, 3));
+		assertThat(builder.getParameters().get(1).value).isEqualTo(
+				Arrays.asList(4, 5));
+	}
+
+	@Test
+	public void renderCanonical() {
+		// setup
+		QueryBuilder builder1 = new QueryBuilder();
+		QueryBuilder builder2 = new QueryBuilder();
+		// test
+		builder1.where.in("e.id", Arrays.asList(3L, 1L, 3L, 2L),
+				InOptions.LITERAL.withCanonical(true));
+		builder2.where.in("e.id", new long[] { 2, 1, 3, 1 },
+				InOptions.LITERAL.withCanonical(true));
+		// check
+		assertThat(builder1.where.render()).isEqualTo("(e.id IN (1, 2, 3))");
+		assertThat(builder2.where.render()).isEqualTo("(e.id IN (1, 2, 3))");
+	}
+
+	@Test
+	public void renderPrimitives() {
+		// setup
+		QueryBuilder builder1 = new QueryBuilder();
+		QueryBuilder builder2 = new QueryBuilder();
+		QueryBuilder builder3 = new QueryBuilder();
+		// test
+		builder1.where.in("e.id", new long[] { -12, 3, 3 },
+				InOptions.LITERAL.withPadding(InPadding.POWER_OF_TWO));
+		builder2.where.in("e.id", Arrays.asList(-12L, 3L, 3L, 3L));
+		builder3.where.notIn("e.id", new int[] { 1, 2, 3 },
+				InOptions.PARAMETER.withChunkSize(2));
+		// check
+		assertThat(builder1.where.render()).isEqualTo(
+				"(e.id IN (-12, 3, 3, 3))");
+		assertThat(builder1.where.length()).isEqualTo(
+				builder1.where.render().length());
+		assertThat(builder1.shape()).isEqualTo(builder2.shape());
+		assertThat(builder1.shape().hashCode()).isEqualTo(
+				builder2.shape().hashCode());
+		assertThat(builder3.getParameters().get(0).value).isEqualTo(
+				Arrays.asList(1, 2));
+		assertThat(builder3.getParameters().get(1).value).isEqualTo(
+				Arrays.asList(3));
+	}
+
+	@Test
+	public void adoptCanonicalValues() {
+		// setup
+		final List<Object> values = InValues.of(new long[] { 3, 1, 3 }, true);
+		// test
+		final WhereIn in = new WhereIn(null, "e.id", false,
+				InOptions.LITERAL.withCanonical(true), values);
+		// check
+		assertThat(in.collection).isSameAs(values);
+		assertThat(in.render()).isEqualTo("e.id IN (1, 3)");
+	}
+
+	@Test
+	public void lengthOfLiterals() {
+		// setup
+		final QueryBuilder builder = new QueryBuilder();
+		// test
+		final WhereIn in = new WhereIn(builder, "e.x", false, Arrays.asList(
+				0.1d, 2.5f, new BigDecimal("1.10"), new Date(0L),
+				UUID.randomUUID(), LocalDate.of(2020, 1, 2), 'c', true));
+		// check
+		assertThat(in.length()).isEqualTo(in.render().length());
+	}
+
+	@Test
+	public void canonicalValues() {
+		// test & check
+		assertThat(InValues.canonical(Arrays.asList(2, 1, 2))).containsExactly(
+				1, 2);
+		assertThat(InValues.canonical(Arrays.asList("b", "a", "b")))
+				.containsExactly("a", "b");
+		assertThat(InValues.canonical(Arrays.<Object> asList("b", 1, "b")))
+				.containsExactly("b", 1);
+		final int[] values = { 3, 1 };
+		assertThat(InValues.of(values, true)).containsExactly(1, 3);
+		assertThat(values).containsExactly(3, 1);
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,180 @@
+package com.tri.persistence.jpql;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+
+import org.junit.jupiter.api.Test;
+
+public class WhereNormalizeTest {
+
+	private QueryBuilder createBuilder() {
+		return new QueryBuilder().select.add("e").from.add("Entity e");
+	}
+
+	@Test
+	public void flattenAndUnwrap() {
+		// setup
+		final QueryBuilder builder = createBuilder();
+		builder.where.add("e.a=1").and().add("e.b=1").and().add("e.c=1");
+		builder.where.or().add("e.d=1");
+		builder.where.or().and();
+		final WhereOr or = builder.where.or();
+		or.add("e.e=1").or().add("e.f=1").add("e.g=1");
+		// test
+		builder.normalize();
+		// check
+		assertThat(builder.render()).isEqualTo(
+				"SELECT e FROM Entity e WHERE (e.a=1 AND e.b=1 AND e.c=1 "
+						+ "AND e.d=1 AND (e.e=1 OR e.f=1 OR e.g=1))");
+	}
+
+	@Test
+	public void removeDuplicates() {
+		// setup
+		final QueryBuilder builder = createBuilder();
+		builder.where.add("e.a=1").add(" e.a=1").add("").in("e.b",
+				Arrays.asList(1, 2));
+		builder.where.in("e.b", Arrays.asList(1, 2));
+		// test
+		builder.normalize();
+		// check
+		assertThat(builder.render()).isEqualTo(
+				"SELECT e FROM Entity e WHERE (e.a=1 AND e.b IN (1, 2))");
+	}
+
+	@Test
+	public void mergeIn() {
+		// setup
+		final QueryBuilder builder = createBuilder();
+		builder.where.or().in("e.a", Arrays.asList(1, 2)).add("e.x=1")
+				.in("e.a", Arrays.asList(2, 3));
+		builder.where.notIn("e.b", Arrays.asList(1)).notIn("e.b",
+				Arrays.asList(4));
+		// test
+		builder.normalize();
+		// check
+		assertThat(builder.render()).isEqualTo(
+				"SELECT e FROM Entity e WHERE ((e.a IN (1, 2, 3) OR e.x=1) "
+						+ "AND e.b NOT IN (1, 4))");
+	}
+
+	@Test
+	public void mergeInParameters() {
+		// setup
+		final QueryBuilder builder = createBuilder();
+		builder.where.or()
+				.in("e.a", Arrays.asList(1, 2), InOptions.PARAMETER)
+				.in("e.a", Arrays.asList(3), InOptions.PARAMETER);
+		// test
+		builder.normalize();
+		// check
+		assertThat(builder.render()).isEqualTo(
+				"SELECT e FROM Entity e WHERE (e.a IN :p_3)");
+		assertThat(builder.getParameters().get(2).value).isEqualTo(
+				Arrays.asList(1, 2, 3));
+	}
+
+	@Test
+	public void mergeInKeepsOptions() {
+		// setup
+		final QueryBuilder builder = createBuilder();
+		final InOptions options = InOptions.LITERAL
+				.withPadding(InPadding.POWER_OF_TWO);
+		builder.where.or().in("e.a", Arrays.asList(1, 2), options)
+				.in("e.a", Arrays.asList(3), options);
+		// test
+		builder.normalize();
+		// check
+		assertThat(builder.render()).isEqualTo(
+				"SELECT e FROM Entity e WHERE (e.a IN (1, 2, 3, 3))");
+	}
+
+	@Test
+	public void mergeEqualityKeepsChunks() {
+		// setup
+		final QueryBuilder builder = createBuilder();
+		builder.where.or()
+				.in("e.id", Arrays.asList(0, 1, 2, 3, 4),
+						InOptions.LITERAL.withChunkSize(2))
+				.add("e.id = 99");
+		// test
+		builder.normalize();
+		// check
+		assertThat(builder.render()).isEqualTo(
+				"SELECT e FROM Entity e WHERE ((e.id IN (0, 1) "
+						+ "OR e.id IN (2, 3) OR e.id IN (4, 99)))");
+	}
+
+	@Test
+	public void mergeEqualityParameters() {
+		// setup
+		final QueryBuilder builder = createBuilder().setParameter("a", 1)
+				.setParameter("b", 2).setParameter("c", 1);
+		builder.where.or().add("e.x = :a").add("e.x=:b").add("e.y=:a")
+				.add("e.x=:c").add("e.x=:a")
+				.in("e.x", Arrays.asList(3), InOptions.PARAMETER);
+		// test
+		builder.normalize();
+		// check
+		assertThat(builder.render()).isEqualTo(
+				"SELECT e FROM Entity e WHERE ((e.x IN (:a, :b, :c) OR e.y=:a "
+						+ "OR e.x IN :p_1))");
+	}
+
+	@Test
+	public void mergeEqualityParametersStayBound() {
+		// setup
+		final QueryBuilder builder = createBuilder().setParameter("a", 1)
+				.setParameter("b", 2);
+		builder.where.or().add("e.x=:a").add("e.x=:b");
+		builder.normalize();
+		final EntityManager manager = mock(EntityManager.class);
+		final Query query = mock(Query.class);
+		when(manager.createQuery(builder.render())).thenReturn(query);
+		// test
+		builder.setParameter("a", 5).createQuery(manager);
+		// check
+		verify(query).setParameter("a", 5);
+		verify(query).setParameter("b", 2);
+	}
+
+	@Test
+	public void mergeEqualityLiterals() {
+		// setup
+		final QueryBuilder builder = createBuilder();
+		builder.where.or().add("e.x=1").add("e.x='a'").add("e.x=e.y")
+				.in("e.x", Arrays.asList(1, 2));
+		// test
+		builder.normalize();
+		// check
+		assertThat(builder.render()).isEqualTo(
+				"SELECT e FROM Entity e WHERE ((e.x IN (1, 'a', 2) OR e.x=e.y))");
+	}
+
+	@Test
+	public void cloneUnaffected() throws CloneNotSupportedException {
+		// setup
+		final QueryBuilder builder = createBuilder();
+		builder.where.and().add("e.a=1").add("e.a=1");
+		builder.where.subquery("EXISTS").select.add("s").from.add("Sub s").where
+				.and().add("s.b=1");
+		final QueryBuilder clone = (QueryBuilder) builder.clone();
+		// test
+		builder.normalize();
+		// check
+		assertThat(builder.render()).isEqualTo(
+				"SELECT e FROM Entity e WHERE (e.a=1 "
+						+ "AND EXISTS (SELECT s FROM Sub s WHERE (s.b=1)))");
+		assertThat(clone.render()).isEqualTo(
+				"SELECT e FROM Entity e WHERE ((e.a=1 AND e.a=1) "
+						+ "AND EXISTS (SELECT s FROM Sub s WHERE ((s.b=1))))");
+	}
+
+}